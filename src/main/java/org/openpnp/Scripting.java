@@ -5,20 +5,20 @@ import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.io.File;
-import java.io.FileReader;
 import java.nio.file.FileSystems;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.swing.AbstractAction;
@@ -30,21 +30,27 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.openpnp.gui.MainFrame;
 import org.openpnp.model.Configuration;
+import org.openpnp.util.ScriptEnginePool;
 import org.openpnp.util.UiUtils;
 import org.pmw.tinylog.Logger;
 
-import com.google.common.io.Files;
-
-import bsh.engine.BshScriptEngineFactory;
-
 public class Scripting {
     JMenu menu;
-    final ScriptEngineManager manager = new ScriptEngineManager();
+    final ScriptEngineManager manager = ScriptEnginePool.createScriptEngineManager();
     final String[] extensions;
     File scriptsDirectory;
     File eventsDirectory;
     WatchService watcher;
 
+    /**
+     * The scripts in the Events directory by event name. Rebuilt by the file watcher when the
+     * directory changes so that firing an event doesn't have to list the directory, and an event
+     * without scripts costs a map lookup.
+     */
+    volatile Map<String, List<File>> eventScripts = Collections.emptyMap();
+
+    final ScriptEnginePool scripts = new ScriptEnginePool(manager);
+
     public Scripting() {
         // Collect all the script filename extensions we know how to handle from the list of
         // available scripting engines.
@@ -56,9 +62,8 @@ public class Scripting {
             }
         }
         
-        // Hack to fix BSH on Windows. See https://github.com/openpnp/openpnp/issues/462
-        manager.registerEngineExtension("bsh", new BshScriptEngineFactory());
-        manager.registerEngineExtension("java", new BshScriptEngineFactory());
+        // The BeanShell extensions are registered by createScriptEngineManager() and don't
+        // show up in the factories.
         extensions.add("bsh");
         extensions.add("java");
 
@@ -115,11 +120,13 @@ public class Scripting {
         if (!eventsDirectory.exists()) {
             eventsDirectory.mkdirs();
         }
+        synchronizeEventScripts();
 
         // Add a file watcher so that we can be notified if any scripts change
         try {
             watcher = FileSystems.getDefault().newWatchService();
             watchDirectory(getScriptsDirectory());
+            watchDirectory(eventsDirectory);
             Thread thread = new Thread(() -> {
                 for (;;) {
                     try {
@@ -128,6 +135,7 @@ public class Scripting {
                         key.pollEvents();
                         key.reset();
                         // rescan
+                        synchronizeEventScripts();
                         synchronizeMenu(menu, getScriptsDirectory());
                     }
                     catch (Exception e) {
@@ -190,6 +198,19 @@ public class Scripting {
         }
     }
 
+    private void synchronizeEventScripts() {
+        Map<String, List<File>> eventScripts = new HashMap<>();
+        for (File script : FileUtils.listFiles(eventsDirectory, extensions, false)) {
+            if (!script.isFile()) {
+                continue;
+            }
+            eventScripts.computeIfAbsent(FilenameUtils.getBaseName(script.getName()),
+                    k -> new ArrayList<>()).add(script);
+        }
+        this.eventScripts = eventScripts;
+        scripts.removeMissing();
+    }
+
     private synchronized void synchronizeMenu(JMenu menu, File directory) {
         if (menu == null) {
             return;
@@ -285,35 +306,28 @@ public class Scripting {
     }
     
     public void execute(File script, Map<String, Object> additionalGlobals) throws Exception {
-        ScriptEngine engine =
-                manager.getEngineByExtension(Files.getFileExtension(script.getName()));
-
-        engine.put("config", Configuration.get());
-        engine.put("machine", Configuration.get().getMachine());
-        engine.put("gui", MainFrame.get());
-        engine.put("scripting", this);
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("config", Configuration.get());
+        globals.put("machine", Configuration.get().getMachine());
+        globals.put("gui", MainFrame.get());
+        globals.put("scripting", this);
 
         if (additionalGlobals != null) {
-            for (String name : additionalGlobals.keySet()) {
-                engine.put(name, additionalGlobals.get(name));
-            }
+            globals.putAll(additionalGlobals);
         }
 
-        try (FileReader reader = new FileReader(script)) {
-            engine.eval(reader);
-        }
+        scripts.eval(script, globals);
     }
 
     public void on(String event, Map<String, Object> globals) throws Exception {
-        Logger.trace("Scripting.on " + event);
-        for (File script : FileUtils.listFiles(eventsDirectory, extensions, false)) {
-            if (!script.isFile()) {
-                continue;
-            }
-            if (FilenameUtils.getBaseName(script.getName()).equals(event)) {
-                Logger.trace("Scripting.on found " + script.getName());
-                execute(script, globals);
-            }
+        List<File> handlers = eventScripts.get(event);
+        if (handlers == null) {
+            return;
+        }
+        Logger.trace("Scripting.on {}", event);
+        for (File script : handlers) {
+            Logger.trace("Scripting.on found {}", script.getName());
+            execute(script, globals);
         }
     }
 }
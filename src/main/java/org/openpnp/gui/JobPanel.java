@@ -738,9 +738,7 @@ public class JobPanel extends JPanel {
             Board importedBoard = boardImporter.importBoard((Frame) getTopLevelAncestor());
             if (importedBoard != null) {
                 Board existingBoard = getSelectedBoardLocation().getBoard();
-                for (Placement placement : importedBoard.getPlacements()) {
-                    existingBoard.addPlacement(placement);
-                }
+                existingBoard.addPlacements(importedBoard.getPlacements());
                 for (BoardPad pad : importedBoard.getSolderPastePads()) {
                     // TODO: This is a temporary hack until we redesign the
                     // importer
@@ -749,8 +747,8 @@ public class JobPanel extends JPanel {
                     // try to get it closer to what the user expects to see.
                     pad.setLocation(pad.getLocation()
                             .convertToUnits(getSelectedBoardLocation().getLocation().getUnits()));
-                    existingBoard.addSolderPastePad(pad);
                 }
+                existingBoard.addSolderPastePads(importedBoard.getSolderPastePads());
                 jobPlacementsPanel.setBoardLocation(getSelectedBoardLocation());
                 jobPastePanel.setBoardLocation(getSelectedBoardLocation());
             }
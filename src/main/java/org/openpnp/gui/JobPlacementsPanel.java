@@ -383,9 +383,7 @@ public class JobPlacementsPanel extends JPanel {
 
         @Override
         public void actionPerformed(ActionEvent arg0) {
-            for (Placement placement : getSelections()) {
-                boardLocation.getBoard().removePlacement(placement);
-            }
+            boardLocation.getBoard().removePlacements(getSelections());
             tableModel.fireTableDataChanged();
             updateActivePlacements();
         }
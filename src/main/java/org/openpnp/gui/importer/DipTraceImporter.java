@@ -267,9 +267,7 @@ public class DipTraceImporter implements BoardImporter {
                     		+ "The lines that follow are data.");
                     return;
                 }
-                for (Placement placement : placements) {
-                    board.addPlacement(placement);
-                }
+                board.addPlacements(placements);
                 setVisible(false);
             }
         }
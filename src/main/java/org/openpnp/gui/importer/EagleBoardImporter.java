@@ -552,13 +552,6 @@ public class EagleBoardImporter implements BoardImporter {
                                                         // TODO later we need to associate a list of
                                                         // pads to a board.
                                                         pads.add(boardPad);
-
-                                                        board.addSolderPastePad(boardPad); // This
-                                                                                           // adds
-                                                                                           // the
-                                                                                           // pad to
-                                                                                           // the
-                                                                                           // SolderPaste
                                                     }
                                                 }
                                                 else if (e instanceof org.openpnp.model.eagle.xml.Pad) {
@@ -643,13 +636,6 @@ public class EagleBoardImporter implements BoardImporter {
                                                         }
 
                                                         pads.add(boardPad);
-
-                                                        board.addSolderPastePad(boardPad); // This
-                                                                                           // adds
-                                                                                           // the
-                                                                                           // pad to
-                                                                                           // the
-                                                                                           // SolderPaste
                                                     }
                                                 }
                                             }
@@ -662,12 +648,14 @@ public class EagleBoardImporter implements BoardImporter {
 
                     placement.setSide(element_side);
                     placements.add(placement);
-                    board.addPlacement(placement); // this adds the placement to the Pick and Place
-                                                   // list
 
                 }
             }
         }
+        // Add everything in one go so the board copies its lists and fires its property changes
+        // once rather than once per placement and pad.
+        board.addPlacements(placements);
+        board.addSolderPastePads(pads);
         if (boardToProcess.library != null) {
 
         }
@@ -209,9 +209,7 @@ class KicadPosImporterDialog extends JDialog {
                 MessageBoxes.errorBox(KicadPosImporterDialog.this, "Import Error", e1);
                 return;
             }
-            for (Placement placement : placements) {
-                KicadPosImporterDialog.this.importer.board.addPlacement(placement);
-            }
+            KicadPosImporterDialog.this.importer.board.addPlacements(placements);
             setVisible(false);
         }
     }
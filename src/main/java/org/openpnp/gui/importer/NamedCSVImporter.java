@@ -503,9 +503,7 @@ public class NamedCSVImporter implements BoardImporter {
                     MessageBoxes.errorBox(Dlg.this, "Import Error", e1);
                     return;
                 }
-                for (Placement placement : placements) {
-                    board.addPlacement(placement);
-                }
+                board.addPlacements(placements);
                 setVisible(false);
             }
         }
@@ -7,17 +7,23 @@ import org.pmw.tinylog.writers.Writer;
 
 import javax.swing.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * A LogEntry List Model which contains LogEntries from tinylog
+ *
+ * Log entries can be written from any thread. They are queued and added to the model on the
+ * Event Dispatch Thread at most every FLUSH_INTERVAL_MS, with a single interval added event per
+ * flush. Only the new entries are tested against the filters. All other methods must be called
+ * on the Event Dispatch Thread.
  */
 public class LogEntryListModel extends AbstractListModel<LogEntry> implements Writer {
 
-    private List<LogEntry> originalLogEntries = new ArrayList<>();
-    private List<LogEntry> filteredLogEntries = new ArrayList<>(originalLogEntries);
+    private RingBuffer<LogEntry> originalLogEntries = new RingBuffer<>(LINE_LIMIT);
+    private RingBuffer<LogEntry> filteredLogEntries = new RingBuffer<>(LINE_LIMIT);
     private HashSet<LogEntryFilter> filters = new HashSet<>();
+    private Queue<LogEntry> pendingLogEntries = new ConcurrentLinkedQueue<>();
 
     public static class LogEntryFilter {
         Predicate<LogEntry> filter;
@@ -41,12 +47,19 @@ public class LogEntryListModel extends AbstractListModel<LogEntry> implements Wr
 
     private static final int LINE_LIMIT = 10000;
 
+    private static final int FLUSH_INTERVAL_MS = 100;
+
+    public LogEntryListModel() {
+        javax.swing.Timer timer = new javax.swing.Timer(FLUSH_INTERVAL_MS, e -> addPendingLogEntries());
+        timer.start();
+    }
+
     public List<LogEntry> getOriginalLogEntries() {
-        return originalLogEntries;
+        return originalLogEntries.toList();
     }
 
     public List<LogEntry> getFilteredLogEntries() {
-        return filteredLogEntries;
+        return filteredLogEntries.toList();
     }
 
     @Override
@@ -81,38 +94,168 @@ public class LogEntryListModel extends AbstractListModel<LogEntry> implements Wr
 
     @Override
     public void write(LogEntry logEntry) throws Exception {
-        originalLogEntries.add(logEntry);
-        trim();
+        pendingLogEntries.add(logEntry);
     }
 
     public void clear() {
+        pendingLogEntries.clear();
         this.originalLogEntries.clear();
         filter();
     }
 
     public void filter() {
-        // Reduce all filters to a single one and apply it to our logEntries
-        this.filteredLogEntries = originalLogEntries.stream().filter(
-                filters.stream().map(LogEntryFilter::getFilter).reduce(Predicate::and).orElse(t -> false)
-        ).collect(Collectors.toList());
-
-        SwingUtilities.invokeLater(() -> fireContentsChanged(this, 0, filteredLogEntries.size() - 1));
+        int oldSize = filteredLogEntries.size();
+        filteredLogEntries.clear();
+        for (int i = 0; i < originalLogEntries.size(); i++) {
+            LogEntry logEntry = originalLogEntries.get(i);
+            if (accept(logEntry)) {
+                filteredLogEntries.add(logEntry);
+            }
+        }
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (filteredLogEntries.size() > 0) {
+            fireIntervalAdded(this, 0, filteredLogEntries.size() - 1);
+        }
     }
 
-    private void trim() {
-        if (originalLogEntries.size() > LINE_LIMIT) {
-            originalLogEntries.subList(0, originalLogEntries.size() - LINE_LIMIT).clear();
+    /**
+     * Entries must pass all filters. With no filters nothing is shown.
+     */
+    private boolean accept(LogEntry logEntry) {
+        if (filters.isEmpty()) {
+            return false;
         }
-        filter();
+        for (LogEntryFilter filter : filters) {
+            if (!filter.getFilter().test(logEntry)) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /**
+     * Tinylog may call this from any thread, including its writer and shutdown threads, so it
+     * must not touch the model. The pending entries are added by the timer on the Event
+     * Dispatch Thread.
+     */
     @Override
-    public void flush() throws Exception {
+    public void flush() {
+
+    }
 
+    /**
+     * Moves the pending entries into the model, dropping the oldest entries beyond LINE_LIMIT,
+     * and fires one removed and one added event for the whole batch. Only called by the timer,
+     * on the Event Dispatch Thread.
+     */
+    private void addPendingLogEntries() {
+        if (pendingLogEntries.isEmpty()) {
+            return;
+        }
+        int oldSize = filteredLogEntries.size();
+        int removed = 0;
+        LogEntry logEntry;
+        while ((logEntry = pendingLogEntries.poll()) != null) {
+            LogEntry evicted = originalLogEntries.add(logEntry);
+            // The filtered entries are in the same order as the originals, so an evicted entry
+            // that passed the filters is the first filtered entry.
+            if (evicted != null && filteredLogEntries.size() > 0
+                    && filteredLogEntries.get(0) == evicted) {
+                filteredLogEntries.removeFirst();
+                removed++;
+            }
+            if (accept(logEntry)) {
+                filteredLogEntries.add(logEntry);
+            }
+        }
+        int newSize = filteredLogEntries.size();
+        if (removed > oldSize) {
+            // The batch was larger than the buffer, so nothing from before it is left.
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            if (newSize > 0) {
+                fireIntervalAdded(this, 0, newSize - 1);
+            }
+            return;
+        }
+        if (removed > 0) {
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+        int added = newSize - (oldSize - removed);
+        if (added > 0) {
+            fireIntervalAdded(this, newSize - added, newSize - 1);
+        }
     }
 
     @Override
     public void close() throws Exception {
 
     }
+
+    /**
+     * A fixed capacity list that drops its oldest element when a new one is added to it when
+     * full.
+     */
+    private static class RingBuffer<T> {
+        private final Object[] elements;
+        private int head;
+        private int size;
+
+        RingBuffer(int capacity) {
+            elements = new Object[capacity];
+        }
+
+        /**
+         * Add the element at the end.
+         *
+         * @return The element that was dropped to make room, or null.
+         */
+        @SuppressWarnings("unchecked")
+        T add(T element) {
+            T evicted = null;
+            if (size == elements.length) {
+                evicted = (T) elements[head];
+                head = (head + 1) % elements.length;
+                size--;
+            }
+            elements[(head + size) % elements.length] = element;
+            size++;
+            return evicted;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return (T) elements[(head + index) % elements.length];
+        }
+
+        void removeFirst() {
+            elements[head] = null;
+            head = (head + 1) % elements.length;
+            size--;
+        }
+
+        void clear() {
+            Arrays.fill(elements, null);
+            head = 0;
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        List<T> toList() {
+            List<T> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(get(i));
+            }
+            return list;
+        }
+    }
 }
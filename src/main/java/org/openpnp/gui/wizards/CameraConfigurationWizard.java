@@ -27,6 +27,7 @@ import java.util.Locale;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -39,6 +40,8 @@ import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.components.CameraView;
 import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
+import org.openpnp.gui.support.DoubleConverter;
+import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.gui.support.LengthConverter;
 import org.openpnp.gui.support.LongConverter;
 import org.openpnp.gui.support.MutableLocationProxy;
@@ -155,7 +158,10 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
         panelVision.setLayout(new FormLayout(
                 new ColumnSpec[] {FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,
                         FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
-                new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
+                new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
 
         lblSettleTimems = new JLabel("Settle Time (ms)");
         panelVision.add(lblSettleTimems, "2, 2, right, default");
@@ -163,12 +169,39 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
         textFieldSettleTime = new JTextField();
         panelVision.add(textFieldSettleTime, "4, 2, fill, default");
         textFieldSettleTime.setColumns(10);
+
+        lblSettleAdaptive = new JLabel("Adaptive Settle");
+        lblSettleAdaptive.setToolTipText(
+                "Stop settling as soon as successive frames stop changing. The settle time becomes the upper bound.");
+        panelVision.add(lblSettleAdaptive, "2, 4, right, default");
+
+        chckbxSettleAdaptive = new JCheckBox("");
+        panelVision.add(chckbxSettleAdaptive, "4, 4");
+
+        lblSettleThreshold = new JLabel("Settle Threshold");
+        lblSettleThreshold.setToolTipText(
+                "Mean difference in gray levels between frames below which the camera is considered settled.");
+        panelVision.add(lblSettleThreshold, "2, 6, right, default");
+
+        textFieldSettleThreshold = new JTextField();
+        panelVision.add(textFieldSettleThreshold, "4, 6, fill, default");
+        textFieldSettleThreshold.setColumns(10);
+
+        lblSettleStableFrames = new JLabel("Settle Stable Frames");
+        lblSettleStableFrames.setToolTipText(
+                "Number of frame pairs in a row that must be below the threshold before the camera is considered settled.");
+        panelVision.add(lblSettleStableFrames, "2, 8, right, default");
+
+        textFieldSettleStableFrames = new JTextField();
+        panelVision.add(textFieldSettleStableFrames, "4, 8, fill, default");
+        textFieldSettleStableFrames.setColumns(10);
     }
 
     @Override
     public void createBindings() {
         LengthConverter lengthConverter = new LengthConverter(uppFormat);
         LongConverter longConverter = new LongConverter();
+        DoubleConverter doubleConverter = new DoubleConverter("%f");
 
         addWrappedBinding(camera, "name", nameTf, "text");
         addWrappedBinding(camera, "looking", lookingCb, "selectedItem");
@@ -179,6 +212,11 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
         addWrappedBinding(unitsPerPixel, "lengthY", textFieldUppY, "text", lengthConverter);
 
         addWrappedBinding(camera, "settleTimeMs", textFieldSettleTime, "text", longConverter);
+        addWrappedBinding(camera, "settleAdaptive", chckbxSettleAdaptive, "selected");
+        addWrappedBinding(camera, "settleThreshold", textFieldSettleThreshold, "text",
+                doubleConverter);
+        addWrappedBinding(camera, "settleStableFrames", textFieldSettleStableFrames, "text",
+                new IntegerConverter());
 
         ComponentDecorators.decorateWithAutoSelect(textFieldUppX);
         ComponentDecorators.decorateWithAutoSelect(textFieldUppY);
@@ -189,6 +227,8 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
         ComponentDecorators.decorateWithAutoSelect(textFieldWidth);
         ComponentDecorators.decorateWithAutoSelect(textFieldHeight);
         ComponentDecorators.decorateWithAutoSelect(textFieldSettleTime);
+        ComponentDecorators.decorateWithAutoSelect(textFieldSettleThreshold);
+        ComponentDecorators.decorateWithAutoSelect(textFieldSettleStableFrames);
     }
 
     private Action measureAction = new AbstractAction("Measure") {
@@ -237,6 +277,12 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
     private JPanel panelVision;
     private JLabel lblSettleTimems;
     private JTextField textFieldSettleTime;
+    private JLabel lblSettleAdaptive;
+    private JCheckBox chckbxSettleAdaptive;
+    private JLabel lblSettleThreshold;
+    private JTextField textFieldSettleThreshold;
+    private JLabel lblSettleStableFrames;
+    private JTextField textFieldSettleStableFrames;
     private JPanel panel;
     private JLabel lblName;
     private JLabel lblLooking;
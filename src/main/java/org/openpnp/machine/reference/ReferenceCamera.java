@@ -26,6 +26,7 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -43,6 +44,7 @@ import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.support.Icons;
 import org.openpnp.gui.support.PropertySheetWizardAdapter;
 import org.openpnp.gui.wizards.CameraConfigurationWizard;
+import org.openpnp.machine.reference.camera.FrameRingBuffer;
 import org.openpnp.model.AbstractModelObject;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Length;
@@ -66,6 +68,12 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     }
 
     private static final int CAPTURE_RETRY_COUNT = 10;
+
+    /**
+     * How recent the last frame from the capture thread must be for capture() to wait for the
+     * next one instead of capturing directly, and how long it waits before giving up.
+     */
+    private static final long FRAME_TIMEOUT_MS = 1000;
     
     private static BufferedImage CAPTURE_ERROR_IMAGE = null;
     
@@ -116,33 +124,265 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     private Mat undistortionMap2;
 
     private LensCalibration lensCalibration;
+
+    /**
+     * Scratch Mats for transformMat(), reused from capture to capture.
+     */
+    private final Mat[] transformPool = new Mat[] {new Mat(), new Mat()};
+
+    private final FrameRingBuffer frames = new FrameRingBuffer(4);
     
     public ReferenceCamera() {
     }
     
     @Override
-    public BufferedImage capture() {
+    protected void settle() {
+        waitForMachine();
+        super.settle();
+    }
+
+    /**
+     * If the driver streams commands the camera may not have arrived yet, so wait for the
+     * machine before the settle time starts. If the wait fails the machine may still be moving,
+     * so the capture fails too instead of returning a frame taken in the wrong place. Capture
+     * methods can't throw checked exceptions, so the failure is wrapped.
+     */
+    private void waitForMachine() {
         try {
-            Map<String, Object> globals = new HashMap<>();
-            globals.put("camera", this);
-            Configuration.get().getScripting().on("Camera.BeforeCapture", globals);
+            getDriver().waitForCompletion();
         }
         catch (Exception e) {
-            Logger.warn(e);
+            throw new RuntimeException(
+                    "Unable to capture, waiting for the machine failed: " + e.getMessage(), e);
         }
+    }
+
+    /**
+     * When the capture thread is running, instead of sleeping the settle time and then capturing,
+     * waits for the first frame the capture thread started after the settle time has passed.
+     */
+    @Override
+    public BufferedImage settleAndCapture() {
+        if (!isCaptureThreadRunning() || isSettleAdaptive()) {
+            return super.settleAndCapture();
+        }
+        return captureFrameAfter(beginSettle());
+    }
+
+    @Override
+    public Mat settleAndCaptureMat() {
+        if (!isCaptureThreadRunning() || isSettleAdaptive()) {
+            return super.settleAndCaptureMat();
+        }
+        return captureMatAfter(beginSettle());
+    }
+
+    /**
+     * Captures the frames for adaptive settling without firing the capture scripting events,
+     * which may switch lights or similar for every frame.
+     */
+    @Override
+    protected Mat captureSettleFrame() {
+        FrameRingBuffer.Frame frame = null;
+        if (isCaptureThreadRunning()) {
+            frame = awaitFrameAfter(System.nanoTime());
+        }
+        if (frame == null) {
+            return toSettleFrame(safeInternalCaptureMat());
+        }
+        return toSettleFrame(frame.getMat());
+    }
+
+    @Override
+    public BufferedImage capture() {
+        if (isCaptureThreadRunning()) {
+            return captureFrameAfter(System.nanoTime());
+        }
+        fireCaptureEvent("Camera.BeforeCapture");
         BufferedImage image = safeInternalCapture();
+        fireCaptureEvent("Camera.AfterCapture");
+        return image;
+    }
+
+    @Override
+    public Mat captureMat() {
+        if (isCaptureThreadRunning()) {
+            return captureMatAfter(System.nanoTime());
+        }
+        fireCaptureEvent("Camera.BeforeCapture");
+        Mat mat = safeInternalCaptureMat();
+        fireCaptureEvent("Camera.AfterCapture");
+        return mat;
+    }
+
+    /**
+     * Waits for the machine and fires the settle event.
+     * 
+     * @return The System.nanoTime() at which the camera will have settled.
+     */
+    private long beginSettle() {
+        waitForMachine();
+        fireBeforeSettle();
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getSettleTimeMs());
+    }
+
+    /**
+     * Returns the first frame from the capture thread that was started at or after
+     * captureStartNs, and after the Camera.BeforeCapture event has run. Falls back to capturing
+     * directly, but not before captureStartNs, if the capture thread doesn't deliver one in time.
+     */
+    private BufferedImage captureFrameAfter(long captureStartNs) {
+        fireCaptureEvent("Camera.BeforeCapture");
+        FrameRingBuffer.Frame frame = awaitFrameAfter(captureStartNs);
+        BufferedImage image;
+        if (frame != null) {
+            image = frame.getImage();
+        }
+        else {
+            Logger.trace("Camera {} capture thread did not deliver a frame. Capturing directly.",
+                    this);
+            sleepUntil(captureStartNs);
+            image = safeInternalCapture();
+        }
+        fireCaptureEvent("Camera.AfterCapture");
+        return image;
+    }
+
+    /**
+     * Same as captureFrameAfter(), but returns a Mat owned by the caller.
+     */
+    private Mat captureMatAfter(long captureStartNs) {
+        fireCaptureEvent("Camera.BeforeCapture");
+        FrameRingBuffer.Frame frame = awaitFrameAfter(captureStartNs);
+        Mat mat;
+        if (frame != null) {
+            mat = frame.getMat();
+        }
+        else {
+            Logger.trace("Camera {} capture thread did not deliver a frame. Capturing directly.",
+                    this);
+            sleepUntil(captureStartNs);
+            mat = safeInternalCaptureMat();
+        }
+        fireCaptureEvent("Camera.AfterCapture");
+        return mat;
+    }
+
+    /**
+     * Waits for the first frame from the capture thread that was started at or after
+     * captureStartNs, and not before now. Returns null if none arrives within FRAME_TIMEOUT_MS
+     * of captureStartNs.
+     */
+    private FrameRingBuffer.Frame awaitFrameAfter(long captureStartNs) {
+        long now = System.nanoTime();
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(Math.max(0, captureStartNs - now));
+        captureStartNs = Math.max(captureStartNs, now);
+        try {
+            return frames.awaitFrameAfter(captureStartNs, waitMs + FRAME_TIMEOUT_MS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static void sleepUntil(long ns) {
+        long remainingNs = ns - System.nanoTime();
+        if (remainingNs <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(remainingNs);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns true if the camera's capture thread is delivering frames through
+     * frameCaptured(), in which case captures are served from its frames rather than by
+     * capturing again.
+     */
+    protected boolean isCaptureThreadRunning() {
+        return frames.isFresh(FRAME_TIMEOUT_MS);
+    }
+
+    /**
+     * Called by a camera's capture thread with each frame it captures. The frame is kept for
+     * capture() and settleAndCapture() and sent to the listeners. The image is shared and must
+     * not be modified afterwards.
+     * 
+     * @param image The captured, transformed image.
+     * @param captureStartNs The System.nanoTime() taken just before the capture was started.
+     */
+    protected void frameCaptured(BufferedImage image, long captureStartNs) {
+        frameCaptured(image, null, captureStartNs);
+    }
+
+    /**
+     * Same as frameCaptured(BufferedImage, long), for cameras that capture Mats natively. The Mat
+     * is kept with the image so that captureMat() can copy it instead of converting the image
+     * back.
+     * 
+     * @param image The captured, transformed image.
+     * @param mat The same frame as a Mat, or null. Ownership passes to this method.
+     * @param captureStartNs The System.nanoTime() taken just before the capture was started.
+     */
+    protected void frameCaptured(BufferedImage image, Mat mat, long captureStartNs) {
+        if (image != null) {
+            frames.put(image, mat, captureStartNs);
+        }
+        else if (mat != null) {
+            mat.release();
+        }
+        broadcastCapture(image);
+    }
+
+    private void fireCaptureEvent(String event) {
         try {
             Map<String, Object> globals = new HashMap<>();
             globals.put("camera", this);
-            Configuration.get().getScripting().on("Camera.AfterCapture", globals);
+            Configuration.get().getScripting().on(event, globals);
         }
         catch (Exception e) {
             Logger.warn(e);
         }
-        return image;
     }
     
     protected abstract BufferedImage internalCapture();
+
+    /**
+     * Captures a transformed image as a Mat. The default implementation converts the result of
+     * internalCapture(). Cameras that capture Mats natively should override this, pass the raw
+     * Mat through transformMat() and implement internalCapture() on top of it, so that vision
+     * never has to go through a BufferedImage.
+     * 
+     * @return The transformed Mat, owned by the caller, or null if the capture failed.
+     */
+    protected Mat internalCaptureMat() {
+        BufferedImage image = internalCapture();
+        if (image == null) {
+            return null;
+        }
+        return OpenCvUtils.toMat(image);
+    }
+
+    /**
+     * Same as safeInternalCapture(), for internalCaptureMat().
+     * 
+     * @return
+     */
+    protected synchronized Mat safeInternalCaptureMat() {
+        for (int i = 0; i < CAPTURE_RETRY_COUNT; i++) {
+            Mat mat = internalCaptureMat();
+            if (mat != null) {
+                return mat;
+            }
+            Logger.trace("Camera {} failed to return an image. Retrying.", this);
+        }
+        return OpenCvUtils.toMat(safeInternalCapture());
+    }
     
     /**
      * Wraps internalCapture() to ensure that a null image is never returned. Attempts to
@@ -302,22 +542,37 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     }
 
     protected BufferedImage transformImage(BufferedImage image) {
-        Mat mat = OpenCvUtils.toMat(image);
+        Mat mat = transformMat(OpenCvUtils.toMat(image));
+        image = OpenCvUtils.toBufferedImage(mat);
+        mat.release();
+        return image;
+    }
 
-        mat = crop(mat);
+    /**
+     * Applies the camera's crop, calibration, undistortion, scale, rotation, offset, deinterlace
+     * and flip settings to the given Mat. The intermediate results are written into a pair of
+     * Mats that are kept by the camera and reused from capture to capture, so a capture with
+     * several transforms enabled doesn't allocate a new frame per step.
+     * 
+     * @param mat The raw image. Ownership passes to this method.
+     * @return The transformed image, owned by the caller. This may be the same Mat that was
+     *         passed in.
+     */
+    protected synchronized Mat transformMat(Mat mat) {
+        Mat src = crop(mat);
 
-        mat = calibrate(mat);
+        src = replaceTransformMat(mat, src, calibrate(src));
 
-        mat = undistort(mat);
+        src = replaceTransformMat(mat, src, undistort(src));
 
         // apply affine transformations
-        mat = scale(mat, scaleWidth, scaleHeight);
+        src = replaceTransformMat(mat, src, scale(src, scaleWidth, scaleHeight));
         
-        mat = rotate(mat, rotation);
+        src = replaceTransformMat(mat, src, rotate(src, rotation));
 
-        mat = offset(mat, offsetX, offsetY);
+        src = replaceTransformMat(mat, src, offset(src, offsetX, offsetY));
         
-        mat = deinterlace(mat);
+        src = replaceTransformMat(mat, src, deinterlace(src));
 
         if (flipX || flipY) {
             int flipCode;
@@ -327,14 +582,45 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
             else {
                 flipCode = flipX ? 0 : 1;
             }
-            Core.flip(mat, mat, flipCode);
+            Core.flip(src, src, flipCode);
         }
 
-        image = OpenCvUtils.toBufferedImage(mat);
+        if (src == mat) {
+            return mat;
+        }
+        // The result is a crop of the input or one of the pooled Mats, so copy it out into a Mat
+        // the caller can own.
+        Mat result = new Mat();
+        src.copyTo(result);
+        if (src != transformPool[0] && src != transformPool[1]) {
+            src.release();
+        }
         mat.release();
-        return image;
+        return result;
+    }
+
+    /**
+     * Returns dst, the result of the transform step that was applied to src. If the step made a
+     * new Mat, src is released unless it is pooled or the caller's input, so that a crop view or
+     * a Mat from the calibration doesn't keep the raw frame alive until it is finalized.
+     */
+    private Mat replaceTransformMat(Mat input, Mat src, Mat dst) {
+        if (dst != src && src != input && src != transformPool[0] && src != transformPool[1]) {
+            src.release();
+        }
+        return dst;
+    }
+
+    /**
+     * Returns the pooled Mat that is not src, for a transform step to write into.
+     */
+    private Mat nextTransformMat(Mat src) {
+        return src == transformPool[0] ? transformPool[1] : transformPool[0];
     }
 
+    /**
+     * Crops by taking a view of the center of the Mat, which doesn't copy any pixels.
+     */
     private Mat crop(Mat mat) {
         if (cropWidth != 0 || cropHeight != 0) {
             int cw = (cropWidth != 0) ? cropWidth : (int) mat.size().width;
@@ -344,9 +630,7 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
                     (int) ((mat.size().height / 2) - (ch / 2)),
                     cw,
                     ch);
-            Mat tmp = new Mat(mat, roi);
-            tmp.copyTo(mat);
-            tmp.release();
+            return new Mat(mat, roi);
         }
         return mat;
     }
@@ -355,16 +639,16 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
         if (!deinterlace) {
             return mat;
         }
-        Mat dst = new Mat(mat.size(), mat.type());
+        Mat dst = nextTransformMat(mat);
+        dst.create(mat.size(), mat.type());
         for (int i = 0; i < mat.rows() / 2; i++) {
             mat.row(i).copyTo(dst.row(i * 2));
             mat.row(i + mat.rows() / 2).copyTo(dst.row(i * 2 + 1));
         }
-        mat.release();
         return dst;
     }
 
-    private static Mat rotate(Mat mat, double rotation) {
+    private Mat rotate(Mat mat, double rotation) {
         if (rotation == 0D) {
             return mat;
         }
@@ -384,16 +668,15 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
         mapMatrix.put(0, 2, cx);
         mapMatrix.put(1, 2, cy);
 
-        Mat dst = new Mat(bbox.width, bbox.height, mat.type());
+        Mat dst = nextTransformMat(mat);
         Imgproc.warpAffine(mat, dst, mapMatrix, bbox.size(), Imgproc.INTER_LINEAR);
-        mat.release();
 
         mapMatrix.release();
 
         return dst;
     }
 
-    private static Mat offset(Mat mat, int offsetX, int offsetY) {
+    private Mat offset(Mat mat, int offsetX, int offsetY) {
         if (offsetX == 0D && offsetY == 0D) {
             return mat;
         }
@@ -405,22 +688,20 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
             }
         };
 
-        Mat dst = mat.clone();
+        Mat dst = nextTransformMat(mat);
         Imgproc.warpAffine(mat, dst, mapMatrix, mat.size(), Imgproc.INTER_LINEAR);
-        mat.release();
 
         mapMatrix.release();
 
         return dst;
     }
     
-    private static Mat scale(Mat mat, int scaleWidth, int scaleHeight) {
+    private Mat scale(Mat mat, int scaleWidth, int scaleHeight) {
         if (scaleWidth == 0 || scaleHeight == 0) {
             return mat;
         }
-        Mat dst = new Mat();
+        Mat dst = nextTransformMat(mat);
         Imgproc.resize(mat, dst, new Size(scaleWidth, scaleHeight));
-        mat.release();
         return dst;
     }
 
@@ -440,9 +721,8 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
             rectification.release();
         }
 
-        Mat dst = mat.clone();
+        Mat dst = nextTransformMat(mat);
         Imgproc.remap(mat, dst, undistortionMap1, undistortionMap2, Imgproc.INTER_LINEAR);
-        mat.release();
 
         return dst;
     }
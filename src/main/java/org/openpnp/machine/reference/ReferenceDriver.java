@@ -20,7 +20,9 @@
 package org.openpnp.machine.reference;
 
 import java.io.Closeable;
+import java.util.Map;
 
+import org.openpnp.model.Length;
 import org.openpnp.model.Location;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.WizardConfigurable;
@@ -60,6 +62,22 @@ public interface ReferenceDriver extends WizardConfigurable, PropertySheetHolder
      */
     public void moveTo(ReferenceHeadMountable hm, Location location, double speed) throws Exception;
 
+    /**
+     * Moves the Z axes of several HeadMountables in a single move, such as when the Head moves
+     * everything to Safe Z. Only Z is moved, to the coordinate given for each HeadMountable.
+     * 
+     * @param zs
+     * @param speed
+     * @return true if the driver made the move, false if it can't, in which case nothing has been
+     *         moved and the caller has to call moveTo() for each HeadMountable instead. The
+     *         default returns false.
+     * @throws Exception
+     */
+    public default boolean moveToZ(Map<ReferenceHeadMountable, Length> zs, double speed)
+            throws Exception {
+        return false;
+    }
+
     /**
      * Returns a clone of the HeadMountable's current location. It's important that the returned
      * object is a clone, since the caller may modify the returned Location.
@@ -127,5 +145,16 @@ public interface ReferenceDriver extends WizardConfigurable, PropertySheetHolder
     public void dispense(ReferencePasteDispenser dispenser, Location startLocation,
             Location endLocation, long dispenseTimeMilliseconds) throws Exception;
 
+    /**
+     * Block until every command previously given to the driver has been carried out by the
+     * machine. Drivers that block in every call, as described above, don't need to do anything
+     * here. Drivers that stream commands to the controller use this to synchronize with the
+     * machine before something like a camera capture or a vacuum reading.
+     * 
+     * @throws Exception
+     */
+    public default void waitForCompletion() throws Exception {
+    }
+
     public default void createDefaults() {};
 }
@@ -20,6 +20,8 @@
 package org.openpnp.machine.reference;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.swing.Action;
 
@@ -31,7 +33,11 @@ import org.openpnp.machine.reference.psh.CamerasPropertySheetHolder;
 import org.openpnp.machine.reference.psh.NozzlesPropertySheetHolder;
 import org.openpnp.machine.reference.wizards.ReferenceHeadConfigurationWizard;
 import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
+import org.openpnp.spi.Actuator;
+import org.openpnp.spi.Camera;
 import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.PasteDispenser;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.base.AbstractHead;
 import org.openpnp.spi.base.SimplePropertySheetHolder;
@@ -93,9 +99,48 @@ public class ReferenceHead extends AbstractHead {
     @Override
     public void moveToSafeZ(double speed) throws Exception {
         Logger.debug("{}.moveToSafeZ({})", getName(), speed);
+        Map<ReferenceHeadMountable, Length> safeZs = getSafeZs();
+        if (safeZs != null && driver.moveToZ(safeZs, getMaxPartSpeed() * speed)) {
+            machine.fireMachineHeadActivity(this);
+            return;
+        }
         super.moveToSafeZ(speed);
     }
 
+    /**
+     * Returns the Safe Z of every HeadMountable on the Head, or null if there is one that is not
+     * one of the Reference classes, since its moveToSafeZ() could do something else.
+     */
+    private Map<ReferenceHeadMountable, Length> getSafeZs() {
+        Map<ReferenceHeadMountable, Length> safeZs = new LinkedHashMap<>();
+        for (Nozzle nozzle : getNozzles()) {
+            if (!(nozzle instanceof ReferenceNozzle)) {
+                return null;
+            }
+            safeZs.put((ReferenceNozzle) nozzle, ((ReferenceNozzle) nozzle).getSafeZ());
+        }
+        for (Camera camera : getCameras()) {
+            if (!(camera instanceof ReferenceCamera)) {
+                return null;
+            }
+            safeZs.put((ReferenceCamera) camera, ((ReferenceCamera) camera).getSafeZ());
+        }
+        for (Actuator actuator : getActuators()) {
+            if (!(actuator instanceof ReferenceActuator)) {
+                return null;
+            }
+            safeZs.put((ReferenceActuator) actuator, ((ReferenceActuator) actuator).getSafeZ());
+        }
+        for (PasteDispenser dispenser : getPasteDispensers()) {
+            if (!(dispenser instanceof ReferencePasteDispenser)) {
+                return null;
+            }
+            safeZs.put((ReferencePasteDispenser) dispenser,
+                    ((ReferencePasteDispenser) dispenser).getSafeZ());
+        }
+        return safeZs;
+    }
+
     @Override
     public String toString() {
         return getName();
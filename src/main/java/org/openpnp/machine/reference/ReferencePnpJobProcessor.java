@@ -22,14 +22,15 @@ package org.openpnp.machine.reference;
 import java.io.File;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.machine.reference.wizards.ReferencePnpJobProcessorConfigurationWizard;
@@ -41,6 +42,7 @@ import org.openpnp.model.Location;
 import org.openpnp.model.Panel;
 import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
+import org.openpnp.model.PlacementJournal;
 import org.openpnp.spi.Feeder;
 import org.openpnp.spi.FiducialLocator;
 import org.openpnp.spi.Head;
@@ -48,16 +50,19 @@ import org.openpnp.spi.Machine;
 import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.NozzleTip;
 import org.openpnp.spi.PartAlignment;
+import org.openpnp.spi.PartAlignment.PartAlignmentOffset;
+import org.openpnp.spi.PartAlignment.PartAlignmentRequest;
 import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
 import org.openpnp.spi.base.AbstractJobProcessor;
 import org.openpnp.spi.base.AbstractPnpJobProcessor;
-import org.openpnp.util.Collect;
 import org.openpnp.util.FiniteStateMachine;
 import org.openpnp.util.MovableUtils;
+import org.openpnp.util.TravelOptimizer;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Element;
 import org.simpleframework.xml.Root;
 
 @Root
@@ -66,6 +71,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         Uninitialized,
         PreFlight,
         FiducialCheck,
+        Optimize,
         Plan,
         ChangeNozzleTip,
         Feed,
@@ -110,6 +116,27 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     @Attribute(required = false)
     protected boolean parkWhenComplete = false;
 
+    @Attribute(required = false)
+    protected boolean optimizePlacementOrder = false;
+
+    /**
+     * How often the job and the machine configuration are saved while a job runs. Placements in
+     * between, and the state of the feeders they came from, are only recorded in the job's
+     * PlacementJournal. 0 saves after every placement.
+     */
+    @Attribute(required = false)
+    protected int saveIntervalSeconds = 60;
+
+    /**
+     * Have the feeders of the next cycle present their parts while the current cycle is aligned
+     * and placed. See prefeedNextCycle().
+     */
+    @Attribute(required = false)
+    protected boolean prefeed = false;
+
+    @Element(required = false)
+    protected PnpJobPlanner planner = new SimplePnpJobPlanner();
+
     private FiniteStateMachine<State, Message> fsm = new FiniteStateMachine<>(State.Uninitialized);
 
     protected Job job;
@@ -122,6 +149,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
     protected List<PlannedPlacement> plannedPlacements = new ArrayList<>();
 
+    protected PlacementJournal journal;
+
+    long lastSaveTime;
+
     long startTime;
     int totalPartsPlaced;
 
@@ -132,10 +163,14 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 Message.Next);
         fsm.add(State.PreFlight, Message.Abort, State.Cleanup, Message.Next);
 
-        fsm.add(State.FiducialCheck, Message.Next, State.Plan, this::doFiducialCheck, Message.Next);
-        fsm.add(State.FiducialCheck, Message.Skip, State.Plan, Message.Next);
+        fsm.add(State.FiducialCheck, Message.Next, State.Optimize, this::doFiducialCheck,
+                Message.Next);
+        fsm.add(State.FiducialCheck, Message.Skip, State.Optimize, Message.Next);
         fsm.add(State.FiducialCheck, Message.Abort, State.Cleanup, Message.Next);
 
+        fsm.add(State.Optimize, Message.Next, State.Plan, this::doOptimize, Message.Next);
+        fsm.add(State.Optimize, Message.Abort, State.Cleanup, Message.Next);
+
         fsm.add(State.Plan, Message.Next, State.ChangeNozzleTip, this::doPlan, Message.Next);
         fsm.add(State.Plan, Message.Abort, State.Cleanup, Message.Next);
         fsm.add(State.Plan, Message.Complete, State.Cleanup, Message.Next);
@@ -344,6 +379,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             }
         }
 
+        // Save before the first placement so the journal starts from the job file as it is now.
+        File file = job.getFile();
+        journal = file == null ? null : new PlacementJournal(file);
+        saveJob();
+
         // Everything looks good, so prepare the machine.
         fireTextStatus("Preparing machine.");
 
@@ -373,6 +413,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         	Logger.debug("Panel Fiducial check for {}", boardLocation);
         }
         
+        List<BoardLocation> boardLocations = new ArrayList<>();
         for (BoardLocation boardLocation : job.getBoardLocations()) {
             if (!boardLocation.isEnabled()) {
                 continue;
@@ -380,8 +421,12 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             if (!boardLocation.isCheckFiducials()) {
                 continue;
             }
-            Location location = locator.locateBoard(boardLocation);
-            boardLocation.setLocationFiducialOverrides(location);
+            boardLocations.add(boardLocation);
+        }
+        List<Location> locations = locator.locateBoards(boardLocations);
+        for (int i = 0; i < boardLocations.size(); i++) {
+            BoardLocation boardLocation = boardLocations.get(i);
+            boardLocation.setLocationFiducialOverrides(locations.get(i));
             Logger.debug("Fiducial check for {}", boardLocation);
         }
     }
@@ -397,82 +442,149 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     }
 
     /**
-     * Description of the planner:
-     * 
-     * 1. Create a List<List<JobPlacement>> where each List<JobPlacement> is a List of JobPlacements
-     * that the corresponding (in order) Nozzle can handle in Nozzle order.
-     * 
-     * In addition, each List<JobPlacement> contains one instance of null which represents a
-     * solution where that Nozzle does not perform a placement.
+     * If enabled, reorder the job's placements to reduce XY travel. Placements are grouped by
+     * part height, since the planner always works from the lowest parts up, and within each group
+     * they are ordered by a nearest neighbour tour improved by 2-opt. The distance between two
+     * placements is the distance between their feeder pick locations plus the distance between
+     * their fiducial compensated placement locations, which models a cycle as a run of picks
+     * followed by a run of places. The planner preserves this order within a height group, so
+     * consecutive placements end up in the same cycle.
      * 
-     * 2. Create the Cartesian product of all of the List<JobPlacement>. The resulting List<List
-     * <JobPlacement>> represents possible solutions for a single cycle with each JobPlacement
-     * corresponding to a Nozzle.
-     * 
-     * 3. Filter out any solutions where the same JobPlacement is represented more than once. We
-     * don't want more than one Nozzle trying to place the same Placement.
-     * 
-     * 4. Sort the solutions by fewest nulls followed by fewest nozzle changes. The result is that
-     * we prefer solutions that use more nozzles in a cycle and require fewer nozzle changes.
-     * 
-     * Note: TODO: Originally planned to have this sort by part height but that went out the window
-     * during development. Need to think about how to best combine the height requirement with the
-     * want to fill all nozzles and perform minimal nozzle changes. Based on IRC discussion, the
-     * part height thing might be a red herring - most machines will have enough Z to place all
-     * parts regardless of height order.
+     * @throws Exception
+     */
+    protected void doOptimize() throws Exception {
+        if (!optimizePlacementOrder || jobPlacements.size() < 3) {
+            return;
+        }
+
+        fireTextStatus("Optimizing placement order.");
+
+        List<JobPlacement> sorted = jobPlacements.stream()
+                .sorted(Comparator.comparing(JobPlacement::getPartHeight))
+                .collect(Collectors.toList());
+        int count = sorted.size();
+        double[] pickX = new double[count];
+        double[] pickY = new double[count];
+        double[] placeX = new double[count];
+        double[] placeY = new double[count];
+        for (int i = 0; i < count; i++) {
+            JobPlacement jobPlacement = sorted.get(i);
+            Location placeLocation = Utils2D
+                    .calculateFiducialCompensatedBoardPlacementLocation(jobPlacement.boardLocation,
+                            jobPlacement.placement.getLocation())
+                    .convertToUnits(LengthUnit.Millimeters);
+            // Some feeders can only tell where the part is after feeding, so fall back to the
+            // placement location if the pick location is not available.
+            Location pickLocation = placeLocation;
+            try {
+                pickLocation = findFeeder(machine, jobPlacement.placement.getPart())
+                        .getPickLocation().convertToUnits(LengthUnit.Millimeters);
+            }
+            catch (Exception e) {
+                Logger.debug("No pick location for {}, using placement location.", jobPlacement);
+            }
+            pickX[i] = pickLocation.getX();
+            pickY[i] = pickLocation.getY();
+            placeX[i] = placeLocation.getX();
+            placeY[i] = placeLocation.getY();
+        }
+
+        Location start = head.getDefaultNozzle().getLocation().convertToUnits(LengthUnit.Millimeters);
+        double startX = start.getX();
+        double startY = start.getY();
+
+        TravelOptimizer.Metric metric = (a, b) -> {
+            return distance(pickX[a], pickY[a], pickX[b], pickY[b])
+                    + distance(placeX[a], placeY[a], placeX[b], placeY[b]);
+        };
+
+        // Optimize each height group separately, starting each one where the previous ended.
+        int[] before = new int[count];
+        int[] after = new int[count];
+        int from = 0;
+        while (from < count) {
+            int to = from + 1;
+            while (to < count && sorted.get(to).getPartHeight() == sorted.get(from).getPartHeight()) {
+                to++;
+            }
+            int offset = from;
+            int previous = from == 0 ? -1 : after[from - 1];
+            int[] path = TravelOptimizer.optimize(to - from, (node) -> {
+                if (previous == -1) {
+                    return distance(startX, startY, pickX[offset + node], pickY[offset + node]);
+                }
+                return metric.distance(previous, offset + node);
+            }, (a, b) -> metric.distance(offset + a, offset + b), 20);
+            for (int i = 0; i < path.length; i++) {
+                after[from + i] = offset + path[i];
+            }
+            from = to;
+        }
+
+        for (int i = 0; i < count; i++) {
+            before[i] = i;
+        }
+        IntToDoubleFunction startDistance = (node) -> {
+            return distance(startX, startY, pickX[node], pickY[node]);
+        };
+        double beforeLength = TravelOptimizer.pathLength(before, startDistance, metric);
+        double afterLength = TravelOptimizer.pathLength(after, startDistance, metric);
+
+        jobPlacements.clear();
+        for (int i : after) {
+            jobPlacements.add(sorted.get(i));
+        }
+
+        DecimalFormat df = new DecimalFormat("###,##0.0");
+        Logger.info("Optimized placement order, estimated travel {} mm -> {} mm, saved {} mm",
+                df.format(beforeLength), df.format(afterLength),
+                df.format(beforeLength - afterLength));
+        fireTextStatus("Optimized placement order, estimated travel saved %s mm.",
+                df.format(beforeLength - afterLength));
+    }
+
+    private static double distance(double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Plan the next cycle. The pending placements are sorted by part height and handed to the
+     * configured PnpJobPlanner which decides which placement, if any, each Nozzle will perform.
+     * See SimplePnpJobPlanner for a description of the default strategy.
      */
     protected void doPlan() throws Exception {
         plannedPlacements.clear();
 
         fireTextStatus("Planning placements.");
 
+        for (PlannedPlacement plannedPlacement : planCycle()) {
+            plannedPlacement.jobPlacement.status = Status.Processing;
+            plannedPlacements.add(plannedPlacement);
+        }
+
+        Logger.debug("Planned placements {}", plannedPlacements);
+    }
+
+    /**
+     * Plan a cycle from the pending placements without changing their status.
+     */
+    protected List<PlannedPlacement> planCycle() {
+        List<PlannedPlacement> cycle = new ArrayList<>();
+
         // Get the list of unfinished placements and sort them by part height.
         List<JobPlacement> jobPlacements = getPendingJobPlacements().stream()
                 .sorted(Comparator.comparing(JobPlacement::getPartHeight))
                 .collect(Collectors.toList());
 
         if (jobPlacements.isEmpty()) {
-            return;
+            return cycle;
         }
 
-        // Create a List of Lists of JobPlacements that each Nozzle can handle, including
-        // one instance of null per Nozzle. The null indicates a possible "no solution"
-        // for that Nozzle.
-        List<List<JobPlacement>> solutions = head.getNozzles().stream().map(nozzle -> {
-            return Stream.concat(jobPlacements.stream().filter(jobPlacement -> {
-                return nozzleCanHandle(nozzle, jobPlacement.placement.getPart());
-            }), Stream.of((JobPlacement) null)).collect(Collectors.toList());
-        }).collect(Collectors.toList());
-
-        // Get the cartesian product of those Lists
-        List<JobPlacement> result = Collect.cartesianProduct(solutions).stream()
-                // Filter out any results that contains the same JobPlacement more than once
-                .filter(list -> {
-                    // Note: A previous version of this code just dumped everything into a
-                    // set and compared the size. This worked for two nozzles since there would
-                    // never be more than two nulls, but for > 2 nozzles there will always be a
-                    // solution that has > 2 nulls, which means the size will never match.
-                    // This version of the code ignores the nulls (since they are valid
-                    // solutions) and instead only checks for duplicate valid JobPlacements.
-                    // There is probably a more clever way to do this, but it isn't coming
-                    // to me at the moment.
-                    HashSet<JobPlacement> set = new HashSet<>();
-                    for (JobPlacement jp : list) {
-                        if (jp == null) {
-                            continue;
-                        }
-                        if (set.contains(jp)) {
-                            return false;
-                        }
-                        set.add(jp);
-                    }
-                    return true;
-                })
-                // Sort by the solutions that contain the fewest nulls followed by the
-                // solutions that require the fewest nozzle changes.
-                .sorted(byFewestNulls.thenComparing(byFewestNozzleChanges))
-                // And return the top result.
-                .findFirst().orElse(null);
+        long t = System.nanoTime();
+        List<JobPlacement> result = planner.plan(head, jobPlacements);
+        Logger.trace("Planner took {} us", (System.nanoTime() - t) / 1000);
 
         // Now we have a solution, so apply it to the nozzles and plan the placements.
         for (Nozzle nozzle : head.getNozzles()) {
@@ -481,11 +593,43 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             if (jobPlacement == null) {
                 continue;
             }
-            jobPlacement.status = Status.Processing;
-            plannedPlacements.add(new PlannedPlacement(nozzle, jobPlacement));
+            cycle.add(new PlannedPlacement(nozzle, jobPlacement));
         }
+        return cycle;
+    }
 
-        Logger.debug("Planned placements {}", plannedPlacements);
+    /**
+     * Ask the feeders the next cycle will pick from to present their parts now. All of the
+     * current cycle's parts have been picked at this point, so the feeders' mechanical feed
+     * overlaps with aligning and placing them instead of keeping the head waiting at the feeder.
+     * The next cycle is planned the same way doPlan() will plan it once the current placements
+     * are complete. If it turns out differently, for instance because a placement was skipped,
+     * a prefed part simply waits in its feeder for the next feed.
+     * 
+     * Failures are only logged, the regular feed in the next cycle handles them.
+     */
+    protected void prefeedNextCycle() {
+        Map<Feeder, Nozzle> feeders = new LinkedHashMap<>();
+        for (PlannedPlacement plannedPlacement : planCycle()) {
+            try {
+                Feeder feeder =
+                        findFeeder(machine, plannedPlacement.jobPlacement.placement.getPart());
+                feeders.putIfAbsent(feeder, plannedPlacement.nozzle);
+            }
+            catch (Exception e) {
+                // No feeder, the next cycle will report it.
+            }
+        }
+        for (Map.Entry<Feeder, Nozzle> entry : feeders.entrySet()) {
+            Feeder feeder = entry.getKey();
+            try {
+                Logger.debug("Prefeed {} for {}.", feeder, entry.getValue());
+                feeder.prefeed(entry.getValue());
+            }
+            catch (Exception e) {
+                Logger.warn("Prefeed {} failed: {}", feeder.getName(), e.getMessage());
+            }
+        }
     }
 
     protected void doChangeNozzleTip() throws Exception {
@@ -640,6 +784,12 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     }
 
     protected void doAlign() throws Exception {
+        if (prefeed) {
+            prefeedNextCycle();
+        }
+
+        alignTogether();
+
         for (PlannedPlacement plannedPlacement : plannedPlacements) {
             if (plannedPlacement.stepComplete) {
                 continue;
@@ -674,6 +824,60 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         clearStepComplete();
     }
 
+    /**
+     * Gives each PartAlignment the chance to align all of the placements it handles together,
+     * for instance with a single capture of several nozzles. Placements aligned this way are
+     * marked complete. If the parts can't be aligned together, or aligning them together fails,
+     * they are left for doAlign() to align one at a time so that errors are reported and skipped
+     * per placement as usual.
+     */
+    protected void alignTogether() {
+        Map<PartAlignment, List<PlannedPlacement>> groups = new LinkedHashMap<>();
+        for (PlannedPlacement plannedPlacement : plannedPlacements) {
+            if (plannedPlacement.stepComplete) {
+                continue;
+            }
+            PartAlignment partAlignment =
+                    findPartAligner(machine, plannedPlacement.jobPlacement.placement.getPart());
+            if (partAlignment != null) {
+                groups.computeIfAbsent(partAlignment, k -> new ArrayList<>())
+                        .add(plannedPlacement);
+            }
+        }
+        for (Map.Entry<PartAlignment, List<PlannedPlacement>> group : groups.entrySet()) {
+            PartAlignment partAlignment = group.getKey();
+            List<PlannedPlacement> groupPlacements = group.getValue();
+            List<PartAlignmentRequest> requests = new ArrayList<>();
+            for (PlannedPlacement plannedPlacement : groupPlacements) {
+                JobPlacement jobPlacement = plannedPlacement.jobPlacement;
+                requests.add(new PartAlignmentRequest(jobPlacement.placement.getPart(),
+                        jobPlacement.boardLocation, jobPlacement.placement.getLocation(),
+                        plannedPlacement.nozzle));
+            }
+            if (!partAlignment.canAlignTogether(requests)) {
+                continue;
+            }
+            fireTextStatus("Aligning %d parts together.", requests.size());
+            try {
+                List<PartAlignmentOffset> offsets =
+                        VisionUtils.findPartAlignmentOffsets(partAlignment, requests);
+                for (int i = 0; i < groupPlacements.size(); i++) {
+                    PlannedPlacement plannedPlacement = groupPlacements.get(i);
+                    plannedPlacement.alignmentOffsets = offsets.get(i);
+                    plannedPlacement.stepComplete = true;
+                    Logger.debug("Align {} with {}",
+                            plannedPlacement.jobPlacement.placement.getPart(),
+                            plannedPlacement.nozzle);
+                    Logger.debug("Offsets {}", plannedPlacement.alignmentOffsets);
+                }
+            }
+            catch (Exception e) {
+                Logger.debug("Aligning {} parts together failed ({}), aligning one at a time.",
+                        requests.size(), e.getMessage());
+            }
+        }
+    }
+
     protected void doPlace() throws Exception {
         for (PlannedPlacement plannedPlacement : plannedPlacements) {
             if (plannedPlacement.stepComplete) {
@@ -790,11 +994,13 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             
             Logger.debug("Place {} with {}", part, nozzle.getName());
 
-            File file = job.getFile();
-            if (file != null) {
-                Configuration.get().saveJob(job, file);
+            if (journal != null) {
+                journal.append(job, boardLocation, placement.getId(), true,
+                        plannedPlacement.feeder);
+            }
+            if (System.currentTimeMillis() - lastSaveTime >= saveIntervalSeconds * 1000L) {
+                saveJob();
             }
-            Configuration.get().save();
         }
 
         clearStepComplete();
@@ -803,6 +1009,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected void doCleanup() throws Exception {
         fireTextStatus("Cleaning up.");
 
+        saveJob();
+        journal = null;
+
         // Safe Z the machine
         head.moveToSafeZ();
         
@@ -830,6 +1039,19 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         fireTextStatus("Job finished - placed %s parts in %s sec. (%s CPH)", totalPartsPlaced, df.format(dtSec), df.format(totalPartsPlaced / (dtSec / 3600.0)));
     }
 
+    /**
+     * Save the job, its boards and the machine configuration. Saving the job also empties its
+     * placement journal.
+     */
+    protected void saveJob() throws Exception {
+        File file = job.getFile();
+        if (file != null) {
+            Configuration.get().saveJob(job, file);
+        }
+        Configuration.get().save();
+        lastSaveTime = System.currentTimeMillis();
+    }
+
     protected void doReset() throws Exception {
         this.job = null;
     }
@@ -940,31 +1162,189 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }).collect(Collectors.toList());
     }
 
-    // Sort a List<JobPlacement> by the number of nulls it contains in ascending order.
-    Comparator<List<JobPlacement>> byFewestNulls = (a, b) -> {
-        return Collections.frequency(a, null) - Collections.frequency(b, null);
-    };
-
-    // Sort a List<JobPlacement> by the number of nozzle changes it will require in
-    // descending order.
-    Comparator<List<JobPlacement>> byFewestNozzleChanges = (a, b) -> {
-        int countA = 0, countB = 0;
-        for (int i = 0; i < head.getNozzles().size(); i++) {
-            Nozzle nozzle = head.getNozzles().get(i);
-            JobPlacement jpA = a.get(i);
-            JobPlacement jpB = b.get(i);
-            if (nozzle.getNozzleTip() == null) {
-                countA++;
-                countB++;
-                continue;
+    public boolean isOptimizePlacementOrder() {
+        return optimizePlacementOrder;
+    }
+
+    public void setOptimizePlacementOrder(boolean optimizePlacementOrder) {
+        this.optimizePlacementOrder = optimizePlacementOrder;
+    }
+
+    public int getSaveIntervalSeconds() {
+        return saveIntervalSeconds;
+    }
+
+    public void setSaveIntervalSeconds(int saveIntervalSeconds) {
+        this.saveIntervalSeconds = saveIntervalSeconds;
+    }
+
+    public boolean isPrefeed() {
+        return prefeed;
+    }
+
+    public void setPrefeed(boolean prefeed) {
+        this.prefeed = prefeed;
+    }
+
+    public PnpJobPlanner getPlanner() {
+        return planner;
+    }
+
+    public void setPlanner(PnpJobPlanner planner) {
+        this.planner = planner;
+    }
+
+    /**
+     * A PnpJobPlanner decides which JobPlacement each Nozzle on the Head will handle in a single
+     * cycle.
+     */
+    public interface PnpJobPlanner {
+        /**
+         * @param head
+         * @param jobPlacements The pending JobPlacements, in order of preference.
+         * @return A mutable List with one entry per Nozzle, in Nozzle order. A null entry means
+         *         that Nozzle is not used in this cycle.
+         */
+        List<JobPlacement> plan(Head head, List<JobPlacement> jobPlacements);
+    }
+
+    /**
+     * Description of the planner:
+     * 
+     * The planner finds the assignment of JobPlacements to Nozzles that uses the most Nozzles,
+     * followed by the one that requires the fewest nozzle tip changes. When several assignments
+     * are equally good the one that prefers earlier JobPlacements on earlier Nozzles wins. This
+     * is the same result the original planner produced by sorting the cartesian product of every
+     * Nozzle's compatible JobPlacements, but without ever building that product.
+     * 
+     * 1. Index the JobPlacements each Nozzle can handle, in order, and note for each one whether
+     * the currently loaded NozzleTip can handle it or a nozzle tip change is required.
+     * Compatibility depends only on the Part, so it is computed once per distinct Part.
+     * 
+     * 2. Perform a branch and bound search over the Nozzles in order. A Nozzle only ever needs to
+     * consider the first few unused JobPlacements of each kind (no change / change), one for
+     * itself and one for each Nozzle after it, since any later candidate of the same kind could
+     * be swapped for an earlier free one without making the solution worse. Branches that can't
+     * beat the best solution found so far are pruned.
+     * 
+     * The search visits at most a few hundred nodes for a typical head, regardless of the number
+     * of placements in the job.
+     */
+    @Root
+    public static class SimplePnpJobPlanner implements PnpJobPlanner {
+        @Override
+        public List<JobPlacement> plan(Head head, List<JobPlacement> jobPlacements) {
+            List<Nozzle> nozzles = head.getNozzles();
+            int nozzleCount = nozzles.size();
+
+            List<List<JobPlacement>> candidates = new ArrayList<>();
+            List<List<Boolean>> changes = new ArrayList<>();
+            for (Nozzle nozzle : nozzles) {
+                NozzleTip nozzleTip = nozzle.getNozzleTip();
+                // Per Part: null if the Nozzle can't handle it, otherwise whether a nozzle tip
+                // change is required.
+                HashMap<Part, Boolean> compatibility = new HashMap<>();
+                List<JobPlacement> nozzleCandidates = new ArrayList<>();
+                List<Boolean> nozzleChanges = new ArrayList<>();
+                for (JobPlacement jobPlacement : jobPlacements) {
+                    Part part = jobPlacement.placement.getPart();
+                    Boolean change;
+                    if (compatibility.containsKey(part)) {
+                        change = compatibility.get(part);
+                    }
+                    else {
+                        change = null;
+                        if (nozzleCanHandle(nozzle, part)) {
+                            // A Nozzle with no tip loaded always requires a change, no matter
+                            // what it is assigned, so it doesn't affect the ranking.
+                            change = nozzleTip != null && !nozzleTip.canHandle(part);
+                        }
+                        compatibility.put(part, change);
+                    }
+                    if (change != null) {
+                        nozzleCandidates.add(jobPlacement);
+                        nozzleChanges.add(change);
+                    }
+                }
+                candidates.add(nozzleCandidates);
+                changes.add(nozzleChanges);
             }
-            if (jpA != null && !nozzle.getNozzleTip().canHandle(jpA.placement.getPart())) {
-                countA++;
+
+            Search search = new Search(nozzleCount, candidates, changes);
+            search.search(0, 0, 0);
+
+            List<JobPlacement> result = new ArrayList<>();
+            for (JobPlacement jobPlacement : search.best) {
+                result.add(jobPlacement);
             }
-            if (jpB != null && !nozzle.getNozzleTip().canHandle(jpB.placement.getPart())) {
-                countB++;
+            return result;
+        }
+
+        private static class Search {
+            final int nozzleCount;
+            final List<List<JobPlacement>> candidates;
+            final List<List<Boolean>> changes;
+            final HashSet<JobPlacement> used = new HashSet<>();
+            final JobPlacement[] current;
+            final JobPlacement[] best;
+            int bestFilled = -1;
+            int bestChanges;
+
+            Search(int nozzleCount, List<List<JobPlacement>> candidates,
+                    List<List<Boolean>> changes) {
+                this.nozzleCount = nozzleCount;
+                this.candidates = candidates;
+                this.changes = changes;
+                this.current = new JobPlacement[nozzleCount];
+                this.best = new JobPlacement[nozzleCount];
+            }
+
+            void search(int nozzleIndex, int filled, int changeCount) {
+                int remaining = nozzleCount - nozzleIndex;
+                // Only a strictly better solution replaces the best one, so that ties resolve
+                // to the first solution found.
+                if (bestFilled >= 0 && (filled + remaining < bestFilled
+                        || (filled + remaining == bestFilled && changeCount >= bestChanges))) {
+                    return;
+                }
+                if (nozzleIndex == nozzleCount) {
+                    bestFilled = filled;
+                    bestChanges = changeCount;
+                    System.arraycopy(current, 0, best, 0, nozzleCount);
+                    return;
+                }
+                List<JobPlacement> nozzleCandidates = candidates.get(nozzleIndex);
+                List<Boolean> nozzleChanges = changes.get(nozzleIndex);
+                int sameLeft = remaining;
+                int changeLeft = remaining;
+                for (int i = 0; i < nozzleCandidates.size() && (sameLeft > 0 || changeLeft > 0);
+                        i++) {
+                    JobPlacement jobPlacement = nozzleCandidates.get(i);
+                    if (used.contains(jobPlacement)) {
+                        continue;
+                    }
+                    boolean change = nozzleChanges.get(i);
+                    if (change) {
+                        if (changeLeft == 0) {
+                            continue;
+                        }
+                        changeLeft--;
+                    }
+                    else {
+                        if (sameLeft == 0) {
+                            continue;
+                        }
+                        sameLeft--;
+                    }
+                    used.add(jobPlacement);
+                    current[nozzleIndex] = jobPlacement;
+                    search(nozzleIndex + 1, filled + 1, changeCount + (change ? 1 : 0));
+                    used.remove(jobPlacement);
+                }
+                // And finally the solution where this Nozzle does nothing.
+                current[nozzleIndex] = null;
+                search(nozzleIndex + 1, filled, changeCount);
             }
         }
-        return countA - countB;
-    };
+    }
 }
@@ -0,0 +1,133 @@
+package org.openpnp.machine.reference.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.openpnp.util.OpenCvUtils;
+
+/**
+ * A small ring of the most recent frames captured by a camera's capture thread, each stamped with
+ * the System.nanoTime() at which its capture started. Readers can wait for the first frame whose
+ * capture started after a given time, so a frame captured for the preview can also be handed to
+ * vision once the camera has settled, without capturing again.
+ *
+ * Frames are shared between all readers and must not be modified. A frame from a camera that
+ * captures Mats natively also keeps the Mat, so vision can copy it instead of converting the
+ * image back. The Mat is released when the frame drops out of the ring.
+ */
+public class FrameRingBuffer {
+    public static class Frame {
+        private final BufferedImage image;
+        private Mat mat;
+        private final long captureStartNs;
+
+        public Frame(BufferedImage image, Mat mat, long captureStartNs) {
+            this.image = image;
+            this.mat = mat;
+            this.captureStartNs = captureStartNs;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * Returns the frame as a new Mat owned by the caller. This is a copy of the captured Mat
+         * if there is one, otherwise the image is converted.
+         */
+        public synchronized Mat getMat() {
+            if (mat != null) {
+                return mat.clone();
+            }
+            return OpenCvUtils.toMat(image);
+        }
+
+        synchronized void release() {
+            if (mat != null) {
+                mat.release();
+                mat = null;
+            }
+        }
+
+        public long getCaptureStartNs() {
+            return captureStartNs;
+        }
+    }
+
+    private final Frame[] frames;
+    private int next;
+    private Frame latest;
+
+    public FrameRingBuffer(int size) {
+        frames = new Frame[size];
+    }
+
+    /**
+     * Adds a frame, replacing the oldest one.
+     * 
+     * @param image The captured image.
+     * @param mat The captured Mat or null. Ownership passes to the ring buffer.
+     * @param captureStartNs The System.nanoTime() at which the capture started.
+     */
+    public synchronized void put(BufferedImage image, Mat mat, long captureStartNs) {
+        if (frames[next] != null) {
+            frames[next].release();
+        }
+        latest = new Frame(image, mat, captureStartNs);
+        frames[next] = latest;
+        next = (next + 1) % frames.length;
+        notifyAll();
+    }
+
+    /**
+     * Returns the most recent frame or null if no frame has been captured yet.
+     */
+    public synchronized Frame getLatest() {
+        return latest;
+    }
+
+    /**
+     * Returns true if a frame has been captured in the last maxAgeMs milliseconds, which means
+     * the capture thread is running and readers can expect a new frame soon.
+     */
+    public synchronized boolean isFresh(long maxAgeMs) {
+        return latest != null && System.nanoTime()
+                - latest.captureStartNs < TimeUnit.MILLISECONDS.toNanos(maxAgeMs);
+    }
+
+    /**
+     * Waits for the oldest frame whose capture started at or after captureStartNs.
+     *
+     * @param captureStartNs A System.nanoTime() value.
+     * @param timeoutMs How long to wait for a matching frame.
+     * @return The frame, or null if no matching frame arrived before the timeout.
+     * @throws InterruptedException
+     */
+    public synchronized Frame awaitFrameAfter(long captureStartNs, long timeoutMs)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            Frame frame = findFrameAfter(captureStartNs);
+            if (frame != null) {
+                return frame;
+            }
+            long remainingNs = deadline - System.nanoTime();
+            if (remainingNs <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNs);
+        }
+    }
+
+    private Frame findFrameAfter(long captureStartNs) {
+        Frame found = null;
+        for (Frame frame : frames) {
+            if (frame != null && frame.captureStartNs - captureStartNs >= 0
+                    && (found == null || frame.captureStartNs < found.captureStartNs)) {
+                found = frame;
+            }
+        }
+        return found;
+    }
+}
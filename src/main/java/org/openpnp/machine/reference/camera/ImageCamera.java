@@ -166,8 +166,9 @@ public class ImageCamera extends ReferenceCamera implements Runnable {
 
     public void run() {
         while (!Thread.interrupted()) {
+            long captureStartNs = System.nanoTime();
             BufferedImage frame = internalCapture();
-            broadcastCapture(frame);
+            frameCaptured(frame, captureStartNs);
             try {
                 Thread.sleep(1000 / fps);
             }
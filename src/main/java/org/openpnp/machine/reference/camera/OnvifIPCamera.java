@@ -134,9 +134,10 @@ public class OnvifIPCamera extends ReferenceCamera implements Runnable {
     public void run() {
         while (!Thread.interrupted()) {
             try {
+                long captureStartNs = System.nanoTime();
                 BufferedImage image = internalCapture();
                 if (image != null) {
-                    broadcastCapture(image);
+                    frameCaptured(image, captureStartNs);
                 }
             }
             catch (Exception e) {
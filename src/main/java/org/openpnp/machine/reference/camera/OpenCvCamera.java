@@ -67,22 +67,34 @@ public class OpenCvCamera extends ReferenceCamera implements Runnable {
 
     @Override
     public synchronized BufferedImage internalCapture() {
+        Mat mat = internalCaptureMat();
+        if (mat == null) {
+            return null;
+        }
+        try {
+            return OpenCvUtils.toBufferedImage(mat);
+        }
+        finally {
+            mat.release();
+        }
+    }
+
+    @Override
+    protected synchronized Mat internalCaptureMat() {
         if (thread == null) {
             initCamera();
         }
         Mat mat = new Mat();
         try {
             if (!fg.read(mat)) {
+                mat.release();
                 return null;
             }
-            BufferedImage img = OpenCvUtils.toBufferedImage(mat);
-            return transformImage(img);
+            return transformMat(mat);
         }
         catch (Exception e) {
-            return null;
-        }
-        finally {
             mat.release();
+            return null;
         }
     }
 
@@ -97,9 +109,10 @@ public class OpenCvCamera extends ReferenceCamera implements Runnable {
     public void run() {
         while (!Thread.interrupted()) {
             try {
-                BufferedImage image = internalCapture();
-                if (image != null) {
-                    broadcastCapture(image);
+                long captureStartNs = System.nanoTime();
+                Mat mat = internalCaptureMat();
+                if (mat != null) {
+                    frameCaptured(OpenCvUtils.toBufferedImage(mat), mat, captureStartNs);
                 }
             }
             catch (Exception e) {
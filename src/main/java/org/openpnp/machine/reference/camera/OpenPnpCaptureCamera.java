@@ -146,9 +146,10 @@ public class OpenPnpCaptureCamera extends ReferenceCamera implements Runnable {
     public void run() {
         while (!Thread.interrupted()) {
             try {
+                long captureStartNs = System.nanoTime();
                 BufferedImage image = internalCapture();
                 if (image != null) {
-                    broadcastCapture(image);
+                    frameCaptured(image, captureStartNs);
                 }
             }
             catch (Exception e) {
@@ -191,8 +191,9 @@ public class SimulatedUpCamera extends ReferenceCamera implements Runnable {
 
     public void run() {
         while (!Thread.interrupted()) {
+            long captureStartNs = System.nanoTime();
             BufferedImage frame = internalCapture();
-            broadcastCapture(frame);
+            frameCaptured(frame, captureStartNs);
             try {
                 Thread.sleep(1000 / fps);
             }
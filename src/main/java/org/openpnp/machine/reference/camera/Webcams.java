@@ -104,11 +104,14 @@ public class Webcams extends ReferenceCamera implements Runnable, WebcamImageTra
     public void run() {
         while (!Thread.interrupted()) {
             try {
+                long captureStartNs = System.nanoTime();
                 BufferedImage image = internalCapture();
                 if (image == null) {
-                    image = redImage;
+                    broadcastCapture(redImage);
+                }
+                else {
+                    frameCaptured(image, captureStartNs);
                 }
-                broadcastCapture(image);
             }
             catch (Exception e) {
                 e.printStackTrace();
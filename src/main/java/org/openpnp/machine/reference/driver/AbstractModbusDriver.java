@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.text.ParseException;
+import java.util.Arrays;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -116,6 +117,12 @@ public abstract class AbstractModbusDriver extends AbstractModelObject implement
 	@Attribute(required = false)
 	protected int timeoutMilliseconds = 500;
 
+	@Attribute(required = false)
+	protected int pollIntervalMilliseconds = 100;
+
+	@Attribute(required = false)
+	protected int activePollIntervalMilliseconds = 10;
+
 	protected ModbusMasterTCP modbusMaster;
 	//Modbus Offset
 	@Attribute(required = false)
@@ -143,6 +150,14 @@ public abstract class AbstractModbusDriver extends AbstractModelObject implement
 
 	private final Object writeLock = new Object();
 
+	//I/O cycle scheduling
+	private final Object ioCycleLock = new Object();
+	private int waitingForInputs;
+	private boolean ioCycleRequested;
+	private int[] writtenHoldings;
+	private boolean[] writtenCoils;
+	private long lastFullWriteNs;
+
 	protected synchronized void connect() throws Exception {
 		disconnect();
 		initBuffers();
@@ -168,6 +183,102 @@ public abstract class AbstractModbusDriver extends AbstractModelObject implement
 		inputReg = new InputRegister[inputRegCount];
 		inputs = new BitVector(discreteInputsCount);
 		coils = new BitVector(coilsCount);
+
+		writtenHoldings = null;
+		writtenCoils = null;
+	}
+
+	/**
+	 * Runs one I/O cycle: reads the discrete inputs and input registers, then writes the holdings
+	 * and the coils. Holdings are written before the coils so a command bit never reaches the
+	 * controller ahead of its parameters. Values that have not changed since they were last
+	 * written are only written again once per pollIntervalMilliseconds. Threads waiting in
+	 * waitForInput() are woken at the end of the cycle.
+	 */
+	protected synchronized void updateData() throws ModbusException {
+		readDiscreteInputs();
+		readInputReg();
+		synchronized (writeLock) {
+			long now = System.nanoTime();
+			boolean fullWrite = now - lastFullWriteNs >= pollIntervalMilliseconds * 1000000L;
+			int[] holdingValues = getRegisterValues(holdings);
+			if (fullWrite || !Arrays.equals(holdingValues, writtenHoldings)) {
+				writeHoldings();
+				writtenHoldings = holdingValues;
+			}
+			boolean[] coilValues = getBitValues(coils);
+			if (fullWrite || !Arrays.equals(coilValues, writtenCoils)) {
+				writeCoils();
+				writtenCoils = coilValues;
+			}
+			if (fullWrite) {
+				lastFullWriteNs = now;
+			}
+		}
+		synchronized (ioCycleLock) {
+			ioCycleLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Called by the polling thread between calls to updateData(). Returns after
+	 * pollIntervalMilliseconds when idle, after activePollIntervalMilliseconds while a thread is
+	 * waiting in waitForInput(), and right away when a thread has just started to wait.
+	 */
+	protected void awaitNextIoCycle() throws InterruptedException {
+		synchronized (ioCycleLock) {
+			if (!ioCycleRequested) {
+				int interval = waitingForInputs > 0 ? activePollIntervalMilliseconds
+						: pollIntervalMilliseconds;
+				ioCycleLock.wait(Math.max(1, interval));
+			}
+			ioCycleRequested = false;
+		}
+	}
+
+	/**
+	 * Waits until the discrete input at the given index has the given state. The thread is parked
+	 * until an I/O cycle brings in a new value, and the polling thread runs I/O cycles every
+	 * activePollIntervalMilliseconds while anyone is waiting.
+	 *
+	 * @throws Exception if the input did not reach the state within timeoutMilliseconds.
+	 */
+	public void waitForInput(int index, boolean state, long timeoutMilliseconds) throws Exception {
+		long deadline = System.currentTimeMillis() + timeoutMilliseconds;
+		synchronized (ioCycleLock) {
+			waitingForInputs++;
+			ioCycleRequested = true;
+			ioCycleLock.notifyAll();
+			try {
+				while (getInputs().getBit(index) != state) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						throw new Exception(String.format(
+								"Timed out waiting for input %d to be %s.", index, state));
+					}
+					ioCycleLock.wait(remaining);
+				}
+			}
+			finally {
+				waitingForInputs--;
+			}
+		}
+	}
+
+	private static int[] getRegisterValues(Register[] registers) {
+		int[] values = new int[registers.length];
+		for (int i = 0; i < registers.length; i++) {
+			values[i] = registers[i].getValue();
+		}
+		return values;
+	}
+
+	private static boolean[] getBitValues(BitVector bits) {
+		boolean[] values = new boolean[bits.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = bits.getBit(i);
+		}
+		return values;
 	}
 
 	@Override
@@ -203,6 +314,22 @@ public abstract class AbstractModbusDriver extends AbstractModelObject implement
 		this.timeoutMilliseconds = Timeout;
 	}
 
+	public int getPollIntervalMilliseconds(){
+		return pollIntervalMilliseconds;
+	}
+
+	public void setPollIntervalMilliseconds(int pollIntervalMilliseconds){
+		this.pollIntervalMilliseconds = pollIntervalMilliseconds;
+	}
+
+	public int getActivePollIntervalMilliseconds(){
+		return activePollIntervalMilliseconds;
+	}
+
+	public void setActivePollIntervalMilliseconds(int activePollIntervalMilliseconds){
+		this.activePollIntervalMilliseconds = activePollIntervalMilliseconds;
+	}
+
 	@Override
 	public void dispense(ReferencePasteDispenser dispenser, Location startLocation, Location endLocation,
 			long dispenseTimeMilliseconds) throws Exception {
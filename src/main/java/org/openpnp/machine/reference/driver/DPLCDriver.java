@@ -244,18 +244,7 @@ public class DPLCDriver extends AbstractModbusDriver implements Named, Runnable
 		}
 
 		// Write Home Position and wait for command to be done
-		//Execute command
-		while(this.getInputs().getBit(0)){
-			updateData();
-		};
-		this.getCoils().setBit(0, true);
-		//Wait ACK
-		while (! this.getInputs().getBit(0)) {
-			updateData();
-			continue;
-		}
-		//Done command
-		this.getCoils().setBit(0, false);
+		executeCommand();
 
 		for (ReferenceDriver driver : subDrivers) {
 			driver.home(head);
@@ -283,17 +272,7 @@ public class DPLCDriver extends AbstractModbusDriver implements Named, Runnable
 					yAxis.setCoordinate(yHomeCoordinate);
 				}
 
-				//Execute command
-				while(this.getInputs().getBit(0)){
-					updateData();
-				};
-				this.getCoils().setBit(0, true);
-				//Wait ACK
-				while (!this.getInputs().getBit(0)) {
-					continue;
-				}
-				//Done command
-				this.getCoils().setBit(0, false);
+				executeCommand();
 
 				// //Save new home in controller
 				// String g92command = getCommand(null, CommandType.POST_VISION_HOME_COMMAND);
@@ -468,26 +447,11 @@ public class DPLCDriver extends AbstractModbusDriver implements Named, Runnable
 				}
 
 				Logger.debug("moveTo({}, {}, {}, {})...", x, y, z, rotation);
-				updateData();
-
-				//Execute command
 				this.getCoils().setBit(0, false);
+				updateData();
 
-				while(this.getInputs().getBit(0)){
-					updateData();
-				};
-				this.getCoils().setBit(0, true);
-				// Wait for command done
-				while (!this.getInputs().getBit(0)) {
-					//Check done
-					updateData();
-				}
-				//Clear command
-				this.getCoils().setBit(0, false);
+				executeCommand();
 				updateData();
-				//if (!done) {
-				//	throw new Exception("Timed out waiting for move to complete.");
-				//}
 			} // there is a move
 
 		} // there were axes involved
@@ -639,26 +603,43 @@ public class DPLCDriver extends AbstractModbusDriver implements Named, Runnable
 		}
 	}
 
+	/**
+	 * Hands the command in the holdings to the controller: waits for the controller to be ready,
+	 * sets the command coil, waits for the acknowledge and clears the coil again.
+	 */
+	private void executeCommand() throws Exception {
+		this.waitForInput(0, false, moveTimeoutMilliseconds);
+		this.getCoils().setBit(0, true);
+		this.waitForInput(0, true, moveTimeoutMilliseconds);
+		this.getCoils().setBit(0, false);
+	}
+
 	@Override
 	public void run() {
+		long lastPositionReport = 0;
 		while (!disconnectRequested) {
-			// Refresh modbus Data
-			if (this.modbusMaster != null) {
-				try {
+			try {
+				// Refresh modbus Data
+				if (this.modbusMaster != null) {
 					updateData();
-					processPositionReport();
-					// Wait time to update data
-					Thread.sleep(100);
-				} catch (InterruptedException | ModbusException e) {
-					Logger.error("modbus update error", e);
-					this.disconnect();
-
-                    ReferenceMachine machine = ((ReferenceMachine) Configuration.get().getMachine());
-                    for (Head head : Configuration.get().getMachine().getHeads()) {
-                        machine.fireMachineDisabled("Modbus connection error");
-                    }
-                    break;
+					// The cycles run faster while a command is outstanding, keep the position
+					// reports at the idle rate.
+					long now = System.currentTimeMillis();
+					if (now - lastPositionReport >= pollIntervalMilliseconds) {
+						processPositionReport();
+						lastPositionReport = now;
+					}
 				}
+				awaitNextIoCycle();
+			} catch (InterruptedException | ModbusException e) {
+				Logger.error("modbus update error", e);
+				this.disconnect();
+
+                ReferenceMachine machine = ((ReferenceMachine) Configuration.get().getMachine());
+                for (Head head : Configuration.get().getMachine().getHeads()) {
+                    machine.fireMachineDisabled("Modbus connection error");
+                }
+                break;
 			}
 		}
 	}
@@ -680,17 +661,6 @@ public class DPLCDriver extends AbstractModbusDriver implements Named, Runnable
 		return true;
 	}
 
-	protected synchronized void updateData() throws ModbusException {
-		// Read Contacts
-		readDiscreteInputs();
-		// Write Coils
-		writeCoils();
-		// Read Input Reg
-		readInputReg();
-		// Write Holdings
-		writeHoldings();
-	}
-
 	public void setOutput(int output, boolean state) {
 		if (output >= 0 && output < 2) {
 			if (state) { // turn on output
@@ -29,6 +29,8 @@ public class AbstractModbusDriverConfigurationWizard extends AbstractConfigurati
 	private JTextField textModbusIp;
 	private JSpinner spinnerPort;
 	private JSpinner spinnerTimeout;
+	private JSpinner spinnerPollInterval;
+	private JSpinner spinnerActivePollInterval;
 
 	public AbstractModbusDriverConfigurationWizard(AbstractModbusDriver driver) throws ParseException {
 		this.driver = driver;
@@ -85,6 +87,21 @@ public class AbstractModbusDriverConfigurationWizard extends AbstractConfigurati
 		spinnerTimeout = new JSpinner(new SpinnerNumberModel(driver.getTimeoutMilliseconds(), 
 				1, 10000, 1));
 		panel.add(spinnerTimeout, "4, 6, fill, default");
+
+		JLabel lblPollInterval = new JLabel("Poll Interval (ms)");
+		panel.add(lblPollInterval, "2, 8, right, default");
+
+		spinnerPollInterval = new JSpinner(new SpinnerNumberModel(driver.getPollIntervalMilliseconds(),
+				1, 10000, 1));
+		panel.add(spinnerPollInterval, "4, 8, fill, default");
+
+		JLabel lblActivePollInterval = new JLabel("Active Poll Interval (ms)");
+		lblActivePollInterval.setToolTipText("Poll interval while waiting for the controller to acknowledge a command.");
+		panel.add(lblActivePollInterval, "2, 10, right, default");
+
+		spinnerActivePollInterval = new JSpinner(new SpinnerNumberModel(driver.getActivePollIntervalMilliseconds(),
+				1, 10000, 1));
+		panel.add(spinnerActivePollInterval, "4, 10, fill, default");
 	}
 
 	@Override
@@ -92,6 +109,8 @@ public class AbstractModbusDriverConfigurationWizard extends AbstractConfigurati
 		addWrappedBinding(driver, "modbusIp", textModbusIp, "text");
 		addWrappedBinding(driver, "port", spinnerPort, "value");
 		addWrappedBinding(driver, "timeoutMilliseconds", spinnerTimeout, "value");
+		addWrappedBinding(driver, "pollIntervalMilliseconds", spinnerPollInterval, "value");
+		addWrappedBinding(driver, "activePollIntervalMilliseconds", spinnerActivePollInterval, "value");
 	}
 
 	class IPTextFieldVerifier extends InputVerifier {
@@ -73,6 +73,8 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
         
         JLabel lblUnits = new JLabel("Units");
@@ -142,6 +144,23 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
         
         visualHoming = new JCheckBox("");
         settingsPanel.add(visualHoming, "8, 10");
+        
+        JLabel lblStreamingMode = new JLabel("Streaming Mode");
+        lblStreamingMode.setToolTipText(
+                "Send commands without waiting for each one to be confirmed. Configure a STREAMING_SYNC_COMMAND such as M400 so OpenPnP can wait for moves to complete.");
+        settingsPanel.add(lblStreamingMode, "2, 12, right, default");
+        
+        streamingModeCb = new JComboBox(GcodeDriver.StreamingMode.values());
+        settingsPanel.add(streamingModeCb, "4, 12, fill, default");
+        
+        JLabel lblStreamingBufferSize = new JLabel("Controller Buffer Size");
+        lblStreamingBufferSize.setToolTipText(
+                "Characters for Character Counting, lines for Line Counting.");
+        settingsPanel.add(lblStreamingBufferSize, "6, 12, right, default");
+        
+        streamingBufferSizeTf = new JTextField();
+        settingsPanel.add(streamingBufferSizeTf, "8, 12, fill, default");
+        streamingBufferSizeTf.setColumns(5);
     }
 
     @Override
@@ -161,6 +180,8 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
         addWrappedBinding(driver, "connectWaitTimeMilliseconds", connectWaitTimeTf, "text", intConverter);
         addWrappedBinding(driver, "name", driverName, "text");
         addWrappedBinding(driver, "visualHomingEnabled", visualHoming, "selected");
+        addWrappedBinding(driver, "streamingMode", streamingModeCb, "selectedItem");
+        addWrappedBinding(driver, "streamingBufferSize", streamingBufferSizeTf, "text", intConverter);
         
         ComponentDecorators.decorateWithAutoSelect(maxFeedRateTf);
         ComponentDecorators.decorateWithAutoSelect(backlashOffsetXTf);
@@ -170,6 +191,7 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
         ComponentDecorators.decorateWithAutoSelect(commandTimeoutTf);
         ComponentDecorators.decorateWithAutoSelect(connectWaitTimeTf);
         ComponentDecorators.decorateWithAutoSelect(driverName);
+        ComponentDecorators.decorateWithAutoSelect(streamingBufferSizeTf);
     }
 
     public final Action exportProfileAction = new AbstractAction() {
@@ -308,6 +330,8 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
     private JComboBox unitsCb;
     private JTextField driverName;
     private JCheckBox visualHoming;
+    private JComboBox streamingModeCb;
+    private JTextField streamingBufferSizeTf;
 
     static class HeadMountableItem {
         private HeadMountable hm;
@@ -56,6 +56,11 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
     @Attribute(required=false)
     protected double postPickActuatorValue;
 
+    /**
+     * Set when prefeed() has actuated the feeder and the part hasn't been taken by feed() yet.
+     */
+    protected boolean prefed;
+
     @Override
     public Location getPickLocation() throws Exception {
         return location;
@@ -63,10 +68,35 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
 
     @Override
     public void feed(Nozzle nozzle) throws Exception {
+        boolean ready = isPrefed();
+        prefed = false;
+        if (ready) {
+            Logger.debug("Feeder {} was prefed, part is ready.", getName());
+            return;
+        }
         if (actuatorName == null || actuatorName.equals("")) {
             Logger.warn("No actuatorName specified for feeder {}.", getName());
             return;
         }
+        actuateFeed(nozzle);
+    }
+
+    @Override
+    public void prefeed(Nozzle nozzle) throws Exception {
+        if (isPrefed() || actuatorName == null || actuatorName.equals("")) {
+            return;
+        }
+        prefed = false;
+        actuateFeed(nozzle);
+        prefed = true;
+    }
+
+    @Override
+    public boolean isPrefed() {
+        return prefed;
+    }
+
+    protected void actuateFeed(Nozzle nozzle) throws Exception {
         Actuator actuator = nozzle.getHead().getActuatorByName(actuatorName);
         if (actuator == null) {
             actuator = Configuration.get().getMachine().getActuatorByName(actuatorName);
@@ -108,6 +138,7 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
 
     public void setActuatorName(String actuatorName) {
         this.actuatorName = actuatorName;
+        this.prefed = false;
     }
 
     public ActuatorType getActuatorType() {
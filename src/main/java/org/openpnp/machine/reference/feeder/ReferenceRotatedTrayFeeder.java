@@ -188,6 +188,16 @@ public class ReferenceRotatedTrayFeeder extends ReferenceFeeder {
 		firePropertyChange("feedCount", oldValue, feedCount);
 	}
 
+	@Override
+	public String getJournalState() {
+		return Integer.toString(feedCount);
+	}
+
+	@Override
+	public void setJournalState(String state) throws Exception {
+		setFeedCount(Integer.parseInt(state));
+	}
+
 	@Override
 	public String toString() {
 		return getName();
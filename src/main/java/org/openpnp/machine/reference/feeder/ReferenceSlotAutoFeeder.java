@@ -32,6 +32,12 @@ public class ReferenceSlotAutoFeeder extends ReferenceAutoFeeder {
     private String feederId;
 
     private Bank bank;
+
+    /**
+     * The feeder that was in the slot when it was prefed. If another feeder has been loaded since
+     * then the part that is ready belongs to that one, not to the slot.
+     */
+    private Feeder prefedFeeder;
     
     public ReferenceSlotAutoFeeder() {
         this.id = Configuration.createId("SLOT-");
@@ -88,6 +94,20 @@ public class ReferenceSlotAutoFeeder extends ReferenceAutoFeeder {
         super.feed(nozzle);
     }
 
+    @Override
+    public void prefeed(Nozzle nozzle) throws Exception {
+        if (getFeeder() == null) {
+            return;
+        }
+        super.prefeed(nozzle);
+        prefedFeeder = getFeeder();
+    }
+
+    @Override
+    public boolean isPrefed() {
+        return super.isPrefed() && getFeeder() != null && getFeeder() == prefedFeeder;
+    }
+
     @Override
     public void postPick(Nozzle nozzle) throws Exception {
         if (getFeeder() == null) {
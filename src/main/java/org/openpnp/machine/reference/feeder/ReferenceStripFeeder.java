@@ -21,7 +21,10 @@ package org.openpnp.machine.reference.feeder;
 
 
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.Action;
 
@@ -41,6 +44,8 @@ import org.openpnp.util.MovableUtils;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
+import org.openpnp.vision.FluentCv;
+import org.openpnp.vision.Ransac;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.simpleframework.xml.Attribute;
@@ -108,6 +113,20 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
     @Attribute
     private int feedCount = 0;
 
+    /**
+     * How many parts after the current one get their vision offsets from the same image. 0 looks
+     * at the tape for every part.
+     */
+    @Attribute(required = false)
+    private int visionLookAhead = 0;
+
+    /**
+     * How far the offsets of the parts looked ahead at may be from the current part's before the
+     * look ahead stops.
+     */
+    @Element(required = false)
+    private Length visionDriftTolerance = new Length(0.25, LengthUnit.Millimeters);
+
     private Length holeDiameter = new Length(1.5, LengthUnit.Millimeters);
 
     private Length holePitch = new Length(4, LengthUnit.Millimeters);
@@ -117,6 +136,11 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
     private Location visionOffsets;
     private Location visionLocation;
 
+    /**
+     * Vision offsets measured ahead of time, by the feed count they are for.
+     */
+    private Map<Integer, Location> predictedVisionOffsets = new HashMap<>();
+
     public Length getHoleDiameterMin() {
         return getHoleDiameter().multiply(0.9);
     }
@@ -223,43 +247,120 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         if (!visionEnabled) {
             return;
         }
+        // use the offsets measured when an earlier part was imaged, if there are any
+        Location predictedOffsets = predictedVisionOffsets.remove(feedCount);
+        if (predictedOffsets != null) {
+            visionOffsets = predictedOffsets;
+            return;
+        }
+        predictedVisionOffsets.clear();
+
         // go to where we expect to find the next reference hole
         Camera camera = nozzle.getHead().getDefaultCamera();
-        Location expectedLocation = null;
         Location[] lineLocations = getIdealLineLocations();
+        Location expectedLocation = getExpectedHoleLocation(lineLocations, feedCount);
+        MovableUtils.moveToLocationAtSafeZ(camera, expectedLocation);
+        // and look for the hole
+        List<Location> holes = findHoles(camera);
+        Location actualLocation = getClosestHole(holes, expectedLocation);
+        if (actualLocation == null) {
+            throw new Exception("Unable to locate reference hole. End of strip?");
+        }
+        // make sure it's not too far away
+        Length distance = actualLocation.getLinearLengthTo(expectedLocation)
+                .convertToUnits(LengthUnit.Millimeters);
+        if (distance.getValue() > 2) {
+            throw new Exception("Unable to locate reference hole. End of strip?");
+        }
+        visionOffsets = actualLocation.subtract(expectedLocation).derive(null, null, 0d, 0d);
+        visionLocation = actualLocation;
 
+        predictVisionOffsets(holes, lineLocations);
+    }
+
+    private Location getExpectedHoleLocation(Location[] lineLocations, int feedCount) {
         if (partPitch.convertToUnits(LengthUnit.Millimeters).getValue() < 4) {
             // For tapes with a part pitch < 4 we need to check each hole
             // twice since there are two parts per reference hole.
             // Note the use of holePitch here and partPitch in the
             // alternate case below.
-            expectedLocation = Utils2D.getPointAlongLine(lineLocations[0], lineLocations[1],
+            return Utils2D.getPointAlongLine(lineLocations[0], lineLocations[1],
                     holePitch.multiply((feedCount - 1) / 2));
         }
         else {
             // For tapes with a part pitch >= 4 there is always a reference
             // hole 2mm from a part so we just multiply by the part pitch
             // skipping over holes that are not reference holes.
-            expectedLocation = Utils2D.getPointAlongLine(lineLocations[0], lineLocations[1],
+            return Utils2D.getPointAlongLine(lineLocations[0], lineLocations[1],
                     partPitch.multiply(feedCount - 1));
         }
-        MovableUtils.moveToLocationAtSafeZ(camera, expectedLocation);
-        // and look for the hole
-        Location actualLocation = findClosestHole(camera);
-        if (actualLocation == null) {
-            throw new Exception("Unable to locate reference hole. End of strip?");
+    }
+
+    /**
+     * The image usually shows several holes past the current one. Fit the strip's line through
+     * them with RANSAC, and measure the offsets of the next visionLookAhead parts from the holes
+     * on the line, so the camera doesn't have to move for them. The look ahead stops at the first
+     * part whose hole is not in the image or whose offsets are more than visionDriftTolerance
+     * from the current part's.
+     */
+    private void predictVisionOffsets(List<Location> holes, Location[] lineLocations) {
+        if (visionLookAhead <= 0 || holes.size() < 2) {
+            return;
         }
-        // make sure it's not too far away
-        Length distance = actualLocation.getLinearLengthTo(expectedLocation)
-                .convertToUnits(LengthUnit.Millimeters);
-        if (distance.getValue() > 2) {
-            throw new Exception("Unable to locate reference hole. End of strip?");
+        LengthUnit units = LengthUnit.Millimeters;
+        List<org.opencv.core.Point> points = new ArrayList<>();
+        for (Location hole : holes) {
+            hole = hole.convertToUnits(units);
+            points.add(new org.opencv.core.Point(hole.getX(), hole.getY()));
         }
-        visionOffsets = actualLocation.subtract(expectedLocation).derive(null, null, 0d, 0d);
-        visionLocation = actualLocation;
+        double pitch = getHolePitch().convertToUnits(units).getValue();
+        double pitchEpsilon = pitch - getHolePitchMin().convertToUnits(units).getValue();
+        double maxDistanceToLine = getHoleLineDistanceMax().convertToUnits(units).getValue();
+        List<Ransac.Line> lines = Ransac.ransac(points, 100, maxDistanceToLine, pitch, pitchEpsilon);
+        if (lines.isEmpty()) {
+            return;
+        }
+        Ransac.Line line = lines.get(0);
+        List<Location> lineHoles = new ArrayList<>();
+        for (int i = 0; i < holes.size(); i++) {
+            if (FluentCv.pointToLineDistance(line.a, line.b, points.get(i)) <= maxDistanceToLine) {
+                lineHoles.add(holes.get(i));
+            }
+        }
+
+        double tolerance = visionDriftTolerance.convertToUnits(units).getValue();
+        Location currentOffsets = visionOffsets.convertToUnits(units);
+        for (int i = 1; i <= visionLookAhead; i++) {
+            int count = feedCount + i;
+            Location expectedLocation = getExpectedHoleLocation(lineLocations, count);
+            Location hole = getClosestHole(lineHoles, expectedLocation);
+            if (hole == null || hole.getLinearLengthTo(expectedLocation).convertToUnits(units)
+                    .getValue() > pitch / 2) {
+                break;
+            }
+            Location offsets = hole.subtract(expectedLocation).derive(null, null, 0d, 0d);
+            if (offsets.convertToUnits(units).getLinearDistanceTo(currentOffsets) > tolerance) {
+                break;
+            }
+            predictedVisionOffsets.put(count, offsets);
+        }
+    }
+
+    private static Location getClosestHole(List<Location> holes, Location location) {
+        Location closest = null;
+        double closestDistance = Double.MAX_VALUE;
+        for (Location hole : holes) {
+            double distance = hole.getLinearLengthTo(location)
+                    .convertToUnits(LengthUnit.Millimeters).getValue();
+            if (distance < closestDistance) {
+                closest = hole;
+                closestDistance = distance;
+            }
+        }
+        return closest;
     }
 
-    private Location findClosestHole(Camera camera) throws Exception {
+    private List<Location> findHoles(Camera camera) throws Exception {
         try (CvPipeline pipeline = getPipeline()) {
             Integer pxMinDistance = (int) VisionUtils.toPixels(getHolePitchMin(), camera);
             Integer pxMinDiameter = (int) VisionUtils.toPixels(getHoleDiameterMin(), camera);
@@ -294,19 +395,12 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
             if (results.isEmpty()) {
                 throw new Exception("Feeder " + getName() + ": No tape holes found.");
             }
-    
-            // Find the closest result
-            results.sort((a, b) -> {
-                Double da = VisionUtils.getPixelLocation(camera, a.x, a.y)
-                        .getLinearDistanceTo(camera.getLocation());
-                Double db = VisionUtils.getPixelLocation(camera, b.x, b.y)
-                        .getLinearDistanceTo(camera.getLocation());
-                return da.compareTo(db);
-            });
-    
-            CvStage.Result.Circle closestResult = results.get(0);
-            Location holeLocation = VisionUtils.getPixelLocation(camera, closestResult.x, closestResult.y);
-            return holeLocation;
+
+            List<Location> holes = new ArrayList<>();
+            for (CvStage.Result.Circle circle : results) {
+                holes.add(VisionUtils.getPixelLocation(camera, circle.x, circle.y));
+            }
+            return holes;
         }
     }
 
@@ -338,6 +432,7 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
     public void setReferenceHoleLocation(Location referenceHoleLocation) {
         this.referenceHoleLocation = referenceHoleLocation;
         visionLocation = null;
+        predictedVisionOffsets.clear();
     }
 
     public Location getLastHoleLocation() {
@@ -347,6 +442,7 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
     public void setLastHoleLocation(Location lastHoleLocation) {
         this.lastHoleLocation = lastHoleLocation;
         visionLocation = null;
+        predictedVisionOffsets.clear();
     }
 
     public Length getHoleDiameter() {
@@ -389,9 +485,23 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         int oldValue = this.feedCount;
         this.feedCount = feedCount;
         this.visionOffsets = null;
+        if (feedCount <= oldValue) {
+            // The strip was reset or reloaded, so the holes seen ahead are no longer there.
+            predictedVisionOffsets.clear();
+        }
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    public String getJournalState() {
+        return Integer.toString(feedCount);
+    }
+
+    @Override
+    public void setJournalState(String state) throws Exception {
+        setFeedCount(Integer.parseInt(state));
+    }
+
     public Length getReferenceHoleToPartLinear() {
         return referenceHoleToPartLinear;
     }
@@ -408,6 +518,22 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         this.visionEnabled = visionEnabled;
     }
 
+    public int getVisionLookAhead() {
+        return visionLookAhead;
+    }
+
+    public void setVisionLookAhead(int visionLookAhead) {
+        this.visionLookAhead = visionLookAhead;
+    }
+
+    public Length getVisionDriftTolerance() {
+        return visionDriftTolerance;
+    }
+
+    public void setVisionDriftTolerance(Length visionDriftTolerance) {
+        this.visionDriftTolerance = visionDriftTolerance;
+    }
+
     @Override
     public String toString() {
         return getName();
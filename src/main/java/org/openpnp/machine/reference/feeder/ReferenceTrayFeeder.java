@@ -127,6 +127,16 @@ public class ReferenceTrayFeeder extends ReferenceFeeder {
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    public String getJournalState() {
+        return Integer.toString(feedCount);
+    }
+
+    @Override
+    public void setJournalState(String state) throws Exception {
+        setFeedCount(Integer.parseInt(state));
+    }
+
     @Override
     public String toString() {
         return getName();
@@ -123,6 +123,8 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
     private JLabel lblPart;
     private JLabel lblRetryCount;
     private JTextField retryCountTf;
+    private JTextField textFieldVisionLookAhead;
+    private JTextField textFieldVisionDriftTolerance;
 
     private boolean logDebugInfo = false;
     private Location firstPartLocation;
@@ -239,6 +241,8 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
                 new ColumnSpec[] {FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,
                         FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
                 new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
 
         lblUseVision = new JLabel("Use Vision?");
@@ -265,6 +269,24 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
         });
         panelVision.add(btnResetPipeline, "4, 4");
 
+        JLabel lblVisionLookAhead = new JLabel("Look Ahead (Parts)");
+        lblVisionLookAhead.setToolTipText(
+                "Number of parts after the current one whose holes are measured in the same image, so the camera doesn't have to move for them. 0 images the tape for every part.");
+        panelVision.add(lblVisionLookAhead, "2, 6, right, default");
+
+        textFieldVisionLookAhead = new JTextField();
+        textFieldVisionLookAhead.setColumns(5);
+        panelVision.add(textFieldVisionLookAhead, "4, 6");
+
+        JLabel lblVisionDriftTolerance = new JLabel("Drift Tolerance");
+        lblVisionDriftTolerance.setToolTipText(
+                "The look ahead stops at a hole whose offset differs from the current hole's by more than this.");
+        panelVision.add(lblVisionDriftTolerance, "2, 8, right, default");
+
+        textFieldVisionDriftTolerance = new JTextField();
+        textFieldVisionDriftTolerance.setColumns(5);
+        panelVision.add(textFieldVisionDriftTolerance, "4, 8");
+
         panelLocations = new JPanel();
         contentPanel.add(panelLocations);
         panelLocations.setBorder(new TitledBorder(null, "Locations", TitledBorder.LEADING,
@@ -367,6 +389,10 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
         addWrappedBinding(feedEndLocation, "lengthZ", textFieldFeedEndZ, "text", lengthConverter);
 
         addWrappedBinding(feeder, "visionEnabled", chckbxUseVision, "selected");
+        addWrappedBinding(feeder, "visionLookAhead", textFieldVisionLookAhead, "text",
+                intConverter);
+        addWrappedBinding(feeder, "visionDriftTolerance", textFieldVisionDriftTolerance, "text",
+                lengthConverter);
 
         ComponentDecorators.decorateWithAutoSelect(textFieldLocationRotation);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldTapeWidth);
@@ -379,6 +405,9 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldFeedEndX);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldFeedEndY);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldFeedEndZ);
+        ComponentDecorators.decorateWithAutoSelect(textFieldVisionLookAhead);
+        ComponentDecorators.decorateWithAutoSelectAndLengthConversion(
+                textFieldVisionDriftTolerance);
     }
 
     private Action autoSetup = new AbstractAction("Auto Setup") {
@@ -23,10 +23,14 @@ package org.openpnp.machine.reference.vision;
 
 import java.awt.Point;
 import java.awt.image.BufferedImage;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.opencv.core.Core;
 import org.opencv.core.Core.MinMaxLocResult;
@@ -44,6 +48,7 @@ import org.openpnp.util.LogUtils;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.VisionUtils;
 import org.pmw.tinylog.Logger;
+import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Root;
 
 @Root
@@ -55,6 +60,46 @@ public class OpenCvVisionProvider implements VisionProvider {
         System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
     }
 
+    /**
+     * How many times the image and template are halved for the coarse match. Each level makes the
+     * coarse match about four times cheaper. A level is only used if the template is still at
+     * least MIN_PYRAMID_TEMPLATE_SIZE pixels wide and high at that level.
+     */
+    private static final int MAX_PYRAMID_LEVELS = 2;
+
+    private static final int MIN_PYRAMID_TEMPLATE_SIZE = 12;
+
+    /**
+     * Coarse maxima scoring at least this fraction of the best coarse score are refined at full
+     * resolution. A match is only found if it is one of them, so a match that scores far below
+     * the best one on the coarse level can be missed where a full resolution match would have
+     * found it. If there are more than MAX_PYRAMID_CANDIDATES of them the coarse level doesn't
+     * narrow the search down and the whole image is matched at full resolution instead.
+     */
+    private static final double PYRAMID_CANDIDATE_FACTOR = 0.7;
+
+    private static final int MAX_PYRAMID_CANDIDATES = 50;
+
+    /**
+     * Templates converted for matching, with their pyramid levels, keyed by the template image
+     * the caller passed in. Feeders keep the same template image between calls, so it is only
+     * converted once.
+     */
+    private static final TemplateCache grayTemplates =
+            new TemplateCache(BufferedImage.TYPE_BYTE_GRAY);
+
+    private static final TemplateCache argbTemplates =
+            new TemplateCache(BufferedImage.TYPE_INT_ARGB);
+
+    /**
+     * Match templates on a downsampled copy of the image first, and only match the good coarse
+     * matches again at full resolution. This is much faster on large images, but a match that
+     * scores poorly on the coarse level can be missed, so by default the whole image is matched
+     * at full resolution.
+     */
+    @Attribute(required = false)
+    private boolean pyramidMatching = false;
+
     protected Camera camera;
 
     @Override
@@ -67,6 +112,14 @@ public class OpenCvVisionProvider implements VisionProvider {
         return new OpenCvVisionProviderConfigurationWizard(this);
     }
 
+    public boolean isPyramidMatching() {
+        return pyramidMatching;
+    }
+
+    public void setPyramidMatching(boolean pyramidMatching) {
+        this.pyramidMatching = pyramidMatching;
+    }
+
     protected Mat getCameraImage() {
         BufferedImage image_ = camera.capture();
         Mat image = OpenCvUtils.toMat(image_);
@@ -86,14 +139,16 @@ public class OpenCvVisionProvider implements VisionProvider {
 
         // Convert the camera image and template image to the same type. This
         // is required by the cvMatchTemplate call.
-        template = ImageUtils.convertBufferedImage(template, BufferedImage.TYPE_BYTE_GRAY);
+        List<Mat> templatePyramid = getTemplatePyramid(grayTemplates, template);
         image = ImageUtils.convertBufferedImage(image, BufferedImage.TYPE_BYTE_GRAY);
 
-        Mat templateMat = OpenCvUtils.toMat(template);
+        Mat templateMat = templatePyramid.get(0);
         Mat imageMat = OpenCvUtils.toMat(image);
-        Mat resultMat = new Mat();
 
-        Imgproc.matchTemplate(imageMat, templateMat, resultMat, Imgproc.TM_CCOEFF_NORMED);
+        // Scores are in -1..1, so -1 is never a match.
+        Mat valid = new Mat();
+        Mat resultMat = matchTemplatePyramid(imageMat, templatePyramid,
+                Imgproc.TM_CCOEFF_NORMED, -1, valid);
 
         Mat debugMat = null;
         if (LogUtils.isDebugEnabled()) {
@@ -110,7 +165,9 @@ public class OpenCvVisionProvider implements VisionProvider {
         double rangeMax = maxVal;
 
         List<TemplateMatch> matches = new ArrayList<>();
-        for (Point point : OpenCvUtils.matMaxima(resultMat, rangeMin, rangeMax)) {
+        List<Point> maxima = getTemplateMaxima(resultMat, valid, rangeMin, rangeMax);
+        valid.release();
+        for (Point point : maxima) {
             TemplateMatch match = new TemplateMatch();
             int x = point.x;
             int y = point.y;
@@ -153,18 +210,17 @@ public class OpenCvVisionProvider implements VisionProvider {
 
         // Convert the camera image and template image to the same type. This
         // is required by the cvMatchTemplate call.
-        templateImage_ =
-                ImageUtils.convertBufferedImage(templateImage_, BufferedImage.TYPE_INT_ARGB);
+        List<Mat> templatePyramid = getTemplatePyramid(argbTemplates, templateImage_);
         cameraImage_ = ImageUtils.convertBufferedImage(cameraImage_, BufferedImage.TYPE_INT_ARGB);
 
-        Mat templateImage = OpenCvUtils.toMat(templateImage_);
+        Mat templateImage = templatePyramid.get(0);
         Mat cameraImage = OpenCvUtils.toMat(cameraImage_);
         Mat roiImage = new Mat(cameraImage, new Rect(roiX, roiY, roiWidth, roiHeight));
 
         // http://stackoverflow.com/questions/17001083/opencv-template-matching-example-in-android
-        Mat resultImage = new Mat(roiImage.cols() - templateImage.cols() + 1,
-                roiImage.rows() - templateImage.rows() + 1, CvType.CV_32FC1);
-        Imgproc.matchTemplate(roiImage, templateImage, resultImage, Imgproc.TM_CCOEFF);
+        // The best score is always a real one, so the valid mask isn't needed.
+        Mat resultImage = matchTemplatePyramid(roiImage, templatePyramid, Imgproc.TM_CCOEFF,
+                -Float.MAX_VALUE, null);
 
         MinMaxLocResult mmr = Core.minMaxLoc(resultImage);
 
@@ -180,6 +236,211 @@ public class OpenCvVisionProvider implements VisionProvider {
         return new Point[] {new Point(((int) matchLoc.x) + roiX, ((int) matchLoc.y) + roiY)};
     }
 
+    /**
+     * Returns the template converted to the cache's BufferedImage type as a Mat, followed by its
+     * pyramid levels if pyramid matching is on. The result is cached per template image and
+     * must not be modified.
+     */
+    private List<Mat> getTemplatePyramid(TemplateCache cache, BufferedImage template) {
+        List<Mat> pyramid = cache.get(template);
+        if (!pyramidMatching) {
+            pyramid = pyramid.subList(0, 1);
+        }
+        return pyramid;
+    }
+
+    /**
+     * Caches the template pyramids per template image without keeping the images alive. Once a
+     * template image is garbage collected its Mats are released on the next call.
+     */
+    private static class TemplateCache {
+        private final int type;
+
+        private final ReferenceQueue<BufferedImage> collected = new ReferenceQueue<>();
+
+        // Keyed by System.identityHashCode(), since a BufferedImage is only ever equal to itself.
+        private final Map<Integer, List<Entry>> entries = new HashMap<>();
+
+        TemplateCache(int type) {
+            this.type = type;
+        }
+
+        synchronized List<Mat> get(BufferedImage template) {
+            Entry entry;
+            while ((entry = (Entry) collected.poll()) != null) {
+                List<Entry> bucket = entries.get(entry.hash);
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    entries.remove(entry.hash);
+                }
+                for (Mat mat : entry.pyramid) {
+                    mat.release();
+                }
+            }
+            int hash = System.identityHashCode(template);
+            List<Entry> bucket = entries.computeIfAbsent(hash, k -> new ArrayList<>());
+            for (Entry e : bucket) {
+                if (e.get() == template) {
+                    return e.pyramid;
+                }
+            }
+            List<Mat> pyramid = createTemplatePyramid(
+                    OpenCvUtils.toMat(ImageUtils.convertBufferedImage(template, type)));
+            bucket.add(new Entry(template, hash, pyramid, collected));
+            return pyramid;
+        }
+
+        private static class Entry extends WeakReference<BufferedImage> {
+            final int hash;
+            final List<Mat> pyramid;
+
+            Entry(BufferedImage template, int hash, List<Mat> pyramid,
+                    ReferenceQueue<BufferedImage> queue) {
+                super(template, queue);
+                this.hash = hash;
+                this.pyramid = pyramid;
+            }
+        }
+    }
+
+    /**
+     * Returns the template followed by its pyramid levels for matchTemplatePyramid(), each half
+     * the size of the one before.
+     */
+    public static List<Mat> createTemplatePyramid(Mat template) {
+        List<Mat> pyramid = new ArrayList<>();
+        Mat mat = template;
+        pyramid.add(mat);
+        while (pyramid.size() <= MAX_PYRAMID_LEVELS
+                && Math.min(mat.cols(), mat.rows()) / 2 >= MIN_PYRAMID_TEMPLATE_SIZE) {
+            Mat down = new Mat();
+            Imgproc.pyrDown(mat, down);
+            pyramid.add(down);
+            mat = down;
+        }
+        return pyramid;
+    }
+
+    /**
+     * Matches the template like Imgproc.matchTemplate, but only where it matters. The template
+     * is first matched on a downsampled copy of the image, at the smallest level of the
+     * template's pyramid. Each good coarse match is then matched again at full resolution in a
+     * small window around it, see PYRAMID_CANDIDATE_FACTOR. The rest of the result is set to
+     * fill, which must be a value that the caller never counts as a match. When the coarse level
+     * can't be trusted to narrow the search down, because it is too small, has no positive score
+     * or has too many candidates, the whole image is matched at full resolution instead.
+     * 
+     * The pixels at the edge of a window sit next to fill values instead of their real
+     * neighbours, so they can look like maxima when they are not. If valid is not null it is
+     * set to a CV_8UC1 mask that is non zero only where a pixel and all of its neighbours are
+     * real scores. Use getTemplateMaxima() to find the maxima with it.
+     */
+    public static Mat matchTemplatePyramid(Mat image, List<Mat> templatePyramid, int method,
+            double fill, Mat valid) {
+        Mat template = templatePyramid.get(0);
+        int levels = templatePyramid.size() - 1;
+        if (levels == 0) {
+            return matchTemplateFull(image, template, method, valid);
+        }
+
+        Mat coarseImage = image;
+        for (int i = 0; i < levels; i++) {
+            Mat down = new Mat();
+            Imgproc.pyrDown(coarseImage, down);
+            if (coarseImage != image) {
+                coarseImage.release();
+            }
+            coarseImage = down;
+        }
+        Mat coarseTemplate = templatePyramid.get(levels);
+        if (coarseImage.cols() < coarseTemplate.cols()
+                || coarseImage.rows() < coarseTemplate.rows()) {
+            coarseImage.release();
+            return matchTemplateFull(image, template, method, valid);
+        }
+        Mat coarseResult = new Mat();
+        Imgproc.matchTemplate(coarseImage, coarseTemplate, coarseResult, method);
+        coarseImage.release();
+
+        double coarseMax = Core.minMaxLoc(coarseResult).maxVal;
+        if (coarseMax <= 0) {
+            coarseResult.release();
+            return matchTemplateFull(image, template, method, valid);
+        }
+        List<Point> candidates = OpenCvUtils.matMaxima(coarseResult,
+                coarseMax * PYRAMID_CANDIDATE_FACTOR, Double.MAX_VALUE);
+        coarseResult.release();
+        if (candidates.size() > MAX_PYRAMID_CANDIDATES) {
+            return matchTemplateFull(image, template, method, valid);
+        }
+
+        Mat result = new Mat();
+        int resultCols = image.cols() - template.cols() + 1;
+        int resultRows = image.rows() - template.rows() + 1;
+        result.create(resultRows, resultCols, CvType.CV_32FC1);
+        result.setTo(new Scalar(fill));
+        setValid(valid, result, 0);
+        // The coarse position is off by up to one coarse pixel, plus what pyrDown's smoothing
+        // shifts, plus the edge of the window that is not valid.
+        int margin = (2 << levels) + 1;
+        for (Point candidate : candidates) {
+            int x0 = Math.max(0, (candidate.x << levels) - margin);
+            int y0 = Math.max(0, (candidate.y << levels) - margin);
+            int x1 = Math.min(resultCols - 1, (candidate.x << levels) + margin);
+            int y1 = Math.min(resultRows - 1, (candidate.y << levels) + margin);
+            if (x1 < x0 || y1 < y0) {
+                continue;
+            }
+            Mat roi = image.submat(new Rect(x0, y0, x1 - x0 + template.cols(),
+                    y1 - y0 + template.rows()));
+            Mat roiResult = new Mat();
+            Imgproc.matchTemplate(roi, template, roiResult, method);
+            roiResult.copyTo(result.submat(new Rect(x0, y0, roiResult.cols(), roiResult.rows())));
+            roiResult.release();
+            if (valid != null) {
+                // Edges of the window at the edge of the result have no neighbours outside.
+                int vx0 = x0 == 0 ? x0 : x0 + 1;
+                int vy0 = y0 == 0 ? y0 : y0 + 1;
+                int vx1 = x1 == resultCols - 1 ? x1 : x1 - 1;
+                int vy1 = y1 == resultRows - 1 ? y1 : y1 - 1;
+                if (vx1 >= vx0 && vy1 >= vy0) {
+                    valid.submat(new Rect(vx0, vy0, vx1 - vx0 + 1, vy1 - vy0 + 1))
+                            .setTo(new Scalar(255));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Mat matchTemplateFull(Mat image, Mat template, int method, Mat valid) {
+        Mat result = new Mat();
+        Imgproc.matchTemplate(image, template, result, method);
+        setValid(valid, result, 255);
+        return result;
+    }
+
+    private static void setValid(Mat valid, Mat result, int value) {
+        if (valid != null) {
+            valid.create(result.rows(), result.cols(), CvType.CV_8UC1);
+            valid.setTo(new Scalar(value));
+        }
+    }
+
+    /**
+     * Returns the maxima of a matchTemplatePyramid() result within rangeMin and rangeMax, like
+     * OpenCvUtils.matMaxima(), leaving out those that are not valid.
+     */
+    public static List<Point> getTemplateMaxima(Mat result, Mat valid, double rangeMin,
+            double rangeMax) {
+        List<Point> maxima = new ArrayList<>();
+        for (Point point : OpenCvUtils.matMaxima(result, rangeMin, rangeMax)) {
+            if (valid.get(point.y, point.x)[0] != 0) {
+                maxima.add(point);
+            }
+        }
+        return maxima;
+    }
+
     private void locateTemplateMatchesDebug(Mat roiImage, Mat templateImage,
             org.opencv.core.Point matchLoc) {
         if (LogUtils.isDebugEnabled()) {
@@ -1,12 +1,23 @@
 package org.openpnp.machine.reference.vision;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.swing.Action;
 import javax.swing.Icon;
 
 import org.apache.commons.io.IOUtils;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.RotatedRect;
 import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.support.PropertySheetWizardAdapter;
@@ -28,6 +39,7 @@ import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -47,6 +59,13 @@ public class ReferenceBottomVision implements PartAlignment {
     @Attribute(required = false)
     protected boolean preRotate = false;
 
+    /**
+     * If true, parts on nozzles that fit in the camera's view together are aligned with one move
+     * and one capture, running each part's pipeline on the region around its nozzle.
+     */
+    @Attribute(required = false)
+    protected boolean multiNozzle = false;
+
     @ElementMap(required = false)
     protected Map<String, PartSettings> partSettingsByPartId = new HashMap<>();
 
@@ -78,6 +97,225 @@ public class ReferenceBottomVision implements PartAlignment {
         }
     }
 
+    /**
+     * When multi nozzle alignment is enabled, moves the nozzles over the camera together, captures
+     * a single image and runs each part's pipeline concurrently on a square region centered on
+     * its nozzle. The region size is the spacing between the nozzles in the image. If the nozzles
+     * don't fit in the image together, pre-rotate is enabled or a nozzle can't reach its position
+     * over the camera while the others are there, the parts are aligned one at a time.
+     */
+    @Override
+    public boolean canAlignTogether(List<PartAlignmentRequest> requests) {
+        if (!multiNozzle || preRotate || !isEnabled() || requests.size() < 2) {
+            return false;
+        }
+        try {
+            Camera camera = VisionUtils.getBottomVisionCamera();
+            List<Location> targets = getMultiNozzleTargets(camera, requests);
+            if (targets == null) {
+                return false;
+            }
+            if (getRegionsOfInterest(camera, getNozzlePixels(camera, targets)) == null) {
+                Logger.debug("Nozzles don't fit in {} together, aligning one at a time.", camera);
+                return false;
+            }
+            return true;
+        }
+        catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<PartAlignmentOffset> findOffsets(List<PartAlignmentRequest> requests)
+            throws Exception {
+        if (!canAlignTogether(requests)) {
+            return PartAlignment.super.findOffsets(requests);
+        }
+        Camera camera = VisionUtils.getBottomVisionCamera();
+        List<Location> targets = getMultiNozzleTargets(camera, requests);
+        Point[] nozzlePixels = getNozzlePixels(camera, targets);
+        Rect[] rois = getRegionsOfInterest(camera, nozzlePixels);
+
+        MovableUtils.moveToLocationAtSafeZ(requests.get(0)
+                                                   .getNozzle(),
+                targets.get(0));
+        for (int i = 1; i < requests.size(); i++) {
+            requests.get(i)
+                    .getNozzle()
+                    .moveTo(targets.get(i));
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            Location location = requests.get(i)
+                                        .getNozzle()
+                                        .getLocation()
+                                        .convertToUnits(LengthUnit.Millimeters);
+            Location target = targets.get(i)
+                                     .convertToUnits(LengthUnit.Millimeters);
+            if (location.getLinearDistanceTo(target) > 0.01
+                    || Math.abs(location.getZ() - target.getZ()) > 0.01) {
+                Logger.debug("{} could not reach {} with the other nozzles in place, aligning one at a time.",
+                        requests.get(i)
+                                .getNozzle(),
+                        target);
+                return PartAlignment.super.findOffsets(requests);
+            }
+        }
+
+        Mat image = camera.settleAndCaptureMat();
+        // The same part, and so the same pipeline, may be on more than one nozzle.
+        Set<CvPipeline> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<CvPipeline> pipelines = new ArrayList<>();
+        List<Future<RotatedRect>> rects = new ArrayList<>();
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                Part part = requests.get(i)
+                                    .getPart();
+                Nozzle nozzle = requests.get(i)
+                                        .getNozzle();
+                CvPipeline pipeline = getPartSettings(part).getPipeline();
+                if (!used.add(pipeline)) {
+                    pipeline = pipeline.clone();
+                }
+                pipelines.add(pipeline);
+                pipeline.setProperty(ImageCapture.IMAGE_PROPERTY, new Mat(image, rois[i]));
+                Camera pipelineCamera = camera;
+                CvPipeline pipeline_ = pipeline;
+                rects.add(ForkJoinPool.commonPool()
+                                      .submit(() -> processPipelineAndGetResult(pipeline_,
+                                              pipelineCamera, part, nozzle)));
+            }
+
+            List<PartAlignmentOffset> results = new ArrayList<>();
+            StringBuilder status = new StringBuilder();
+            for (int i = 0; i < requests.size(); i++) {
+                RotatedRect rect;
+                try {
+                    rect = rects.get(i)
+                                .get();
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+                Logger.debug("Result rect {}", rect);
+                // Offsets of the part from its nozzle, in the same way as the single nozzle
+                // offsets are from the center of the camera.
+                Location unitsPerPixel = camera.getUnitsPerPixel();
+                Location offsets = new Location(unitsPerPixel.getUnits(),
+                        (rois[i].x + rect.center.x - nozzlePixels[i].x) * unitsPerPixel.getX(),
+                        (nozzlePixels[i].y - rois[i].y - rect.center.y) * unitsPerPixel.getY(),
+                        0, 0);
+                offsets = applyPostRotateAngle(offsets, rect.angle);
+                Logger.debug("Final offsets {}", offsets);
+                results.add(new PartAlignmentOffset(offsets, false));
+                status.append(String.format("%s : %s ", requests.get(i)
+                                                                .getPart()
+                                                                .getId(),
+                        offsets));
+            }
+            displayResult(image, status.toString(), camera);
+            return results;
+        }
+        finally {
+            for (Future<RotatedRect> rect : rects) {
+                try {
+                    rect.get();
+                }
+                catch (Exception e) {
+                }
+            }
+            for (CvPipeline pipeline : pipelines) {
+                Mat roi = (Mat) pipeline.getProperty(ImageCapture.IMAGE_PROPERTY);
+                pipeline.setProperty(ImageCapture.IMAGE_PROPERTY, null);
+                if (roi != null) {
+                    roi.release();
+                }
+                pipeline.release();
+            }
+            image.release();
+        }
+    }
+
+    /**
+     * Returns the location over the camera for each nozzle, with the first nozzle centered, or
+     * null if the requests can't be aligned together.
+     */
+    private List<Location> getMultiNozzleTargets(Camera camera,
+            List<PartAlignmentRequest> requests) throws Exception {
+        Nozzle first = requests.get(0)
+                               .getNozzle();
+        Location firstLocation = first.getLocation();
+        List<Location> targets = new ArrayList<>();
+        for (PartAlignmentRequest request : requests) {
+            Part part = request.getPart();
+            Nozzle nozzle = request.getNozzle();
+            if (part == null || part != nozzle.getPart() || nozzle.getHead() != first.getHead()
+                    || !getPartSettings(part).isEnabled()) {
+                // Let the single nozzle alignment handle, and report, these.
+                return null;
+            }
+            Location spacing = nozzle.getLocation()
+                                     .subtract(firstLocation);
+            Length partHeight = part.getHeight();
+            targets.add(camera.getLocation()
+                              .add(new Location(spacing.getUnits(), spacing.getX(),
+                                      spacing.getY(), 0, 0))
+                              .add(new Location(partHeight.getUnits(), 0, 0,
+                                      partHeight.getValue(), 0))
+                              .derive(null, null, null, 0.));
+        }
+        return targets;
+    }
+
+    /**
+     * Returns the pixel in the camera image at which each target location will be seen.
+     */
+    private static Point[] getNozzlePixels(Camera camera, List<Location> targets) {
+        Location unitsPerPixel = camera.getUnitsPerPixel();
+        Point[] nozzlePixels = new Point[targets.size()];
+        for (int i = 0; i < targets.size(); i++) {
+            Location offsets = targets.get(i)
+                                      .subtract(camera.getLocation())
+                                      .convertToUnits(unitsPerPixel.getUnits());
+            nozzlePixels[i] = new Point(camera.getWidth() / 2. + offsets.getX() / unitsPerPixel.getX(),
+                    camera.getHeight() / 2. - offsets.getY() / unitsPerPixel.getY());
+        }
+        return nozzlePixels;
+    }
+
+    /**
+     * Returns a square region of the image centered on each nozzle, as large as possible without
+     * the regions overlapping, or null if any region would be smaller than 16 pixels or extend
+     * past the edge of the image.
+     */
+    private static Rect[] getRegionsOfInterest(Camera camera, Point[] nozzlePixels) {
+        double size = Double.MAX_VALUE;
+        for (int i = 0; i < nozzlePixels.length; i++) {
+            for (int j = i + 1; j < nozzlePixels.length; j++) {
+                size = Math.min(size, Math.max(Math.abs(nozzlePixels[i].x - nozzlePixels[j].x),
+                        Math.abs(nozzlePixels[i].y - nozzlePixels[j].y)));
+            }
+        }
+        int side = (int) size;
+        if (side < 16) {
+            return null;
+        }
+        Rect[] rois = new Rect[nozzlePixels.length];
+        for (int i = 0; i < nozzlePixels.length; i++) {
+            Rect roi = new Rect((int) Math.round(nozzlePixels[i].x - side / 2.),
+                    (int) Math.round(nozzlePixels[i].y - side / 2.), side, side);
+            if (roi.x < 0 || roi.y < 0 || roi.x + roi.width > camera.getWidth()
+                    || roi.y + roi.height > camera.getHeight()) {
+                return null;
+            }
+            rois[i] = roi;
+        }
+        return rois;
+    }
+
     private static PartAlignmentOffset findOffsetsPreRotate(Part part, BoardLocation boardLocation,
             Location placementLocation, Nozzle nozzle, Camera camera, PartSettings partSettings)
             throws Exception {
@@ -160,22 +398,7 @@ public class ReferenceBottomVision implements PartAlignment {
             // the center of the camera to the located part.
             Location offsets = VisionUtils.getPixelCenterOffsets(camera, rect.center.x, rect.center.y);
     
-            // We assume that the part is never picked more than 45º rotated
-            // so if OpenCV tells us it's rotated more than 45º we correct
-            // it. This seems to happen quite a bit when the angle of rotation
-            // is close to 0.
-            double angle = rect.angle;
-            while (Math.abs(angle) > 45) {
-                if (angle < 0) {
-                    angle += 90;
-                }
-                else {
-                    angle -= 90;
-                }
-            }
-    
-            // Set the angle on the offsets.
-            offsets = offsets.derive(null, null, null, -angle);
+            offsets = applyPostRotateAngle(offsets, rect.angle);
             Logger.debug("Final offsets {}", offsets);
     
             offsets = offsets.derive(null, null, null, offsets.getRotation());
@@ -186,14 +409,38 @@ public class ReferenceBottomVision implements PartAlignment {
         }
     }
 
+    /**
+     * Sets the rotation of the offsets from the angle of the part's RotatedRect.
+     */
+    private static Location applyPostRotateAngle(Location offsets, double angle) {
+        // We assume that the part is never picked more than 45º rotated
+        // so if OpenCV tells us it's rotated more than 45º we correct
+        // it. This seems to happen quite a bit when the angle of rotation
+        // is close to 0.
+        while (Math.abs(angle) > 45) {
+            if (angle < 0) {
+                angle += 90;
+            }
+            else {
+                angle -= 90;
+            }
+        }
+
+        // Set the angle on the offsets.
+        return offsets.derive(null, null, null, -angle);
+    }
+
     private static void displayResult(CvPipeline pipeline, Part part, Location offsets, Camera camera) {
+        String s = String.format("%s : %s", part.getId(), offsets.toString());
+        displayResult(pipeline.getWorkingImage(), s, camera);
+    }
+
+    private static void displayResult(Mat image, String s, Camera camera) {
         try {
-            String s = String.format("%s : %s", part.getId(), offsets.toString());
             MainFrame.get()
                      .getCameraViews()
                      .getCameraView(camera)
-                     .showFilteredImage(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), s,
-                             1500);
+                     .showFilteredImage(OpenCvUtils.toBufferedImage(image), s, 1500);
         }
         catch (Exception e) {
             // Throw away, just means we're running outside of the UI.
@@ -305,6 +552,14 @@ public class ReferenceBottomVision implements PartAlignment {
         this.preRotate = preRotate;
     }
 
+    public boolean isMultiNozzle() {
+        return multiNozzle;
+    }
+
+    public void setMultiNozzle(boolean multiNozzle) {
+        this.multiNozzle = multiNozzle;
+    }
+
     @Override
     public String getPropertySheetHolderTitle() {
         return "Bottom Vision";
@@ -21,6 +21,8 @@ import org.openpnp.model.Board;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Footprint;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Panel;
 import org.openpnp.model.Part;
@@ -31,6 +33,7 @@ import org.openpnp.spi.FiducialLocator;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.util.IdentifiableList;
 import org.openpnp.util.MovableUtils;
+import org.openpnp.util.TravelOptimizer;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
@@ -57,6 +60,20 @@ public class ReferenceFiducialLocator implements FiducialLocator {
     
     @Attribute(required = false)
     protected int repeatFiducialRecognition = 3;
+
+    /**
+     * When greater than zero, the recognition of a fiducial stops repeating as soon as it is
+     * found less than this distance away from where the camera is.
+     */
+    @Element(required = false)
+    protected Length convergenceTolerance = new Length(0, LengthUnit.Millimeters);
+
+    /**
+     * When enabled, locateBoards() visits the fiducials of all the boards in one route planned
+     * across the boards, rather than board by board.
+     */
+    @Attribute(required = false)
+    protected boolean batchRoute = false;
     
     public Location locateBoard(BoardLocation boardLocation) throws Exception {
         return locateBoard(boardLocation, false);
@@ -99,6 +116,74 @@ public class ReferenceFiducialLocator implements FiducialLocator {
             throw new Exception("Unable to locate second fiducial.");
         }
 
+        return calculateBoardLocation(boardLocation, placementA, placementB, actualLocationA,
+                actualLocationB);
+    }
+
+    /**
+     * Locates the boards like locateBoard() does. If batchRoute is enabled, the two fiducials of
+     * every board are chosen first and then visited in a single route planned across all of
+     * them, starting from the camera's current location.
+     */
+    @Override
+    public List<Location> locateBoards(List<BoardLocation> boardLocations) throws Exception {
+        if (!batchRoute || boardLocations.size() < 2) {
+            return FiducialLocator.super.locateBoards(boardLocations);
+        }
+
+        List<Placement> placements = new ArrayList<>();
+        List<Location> idealLocations = new ArrayList<>();
+        for (BoardLocation boardLocation : boardLocations) {
+            IdentifiableList<Placement> fiducials = getFiducials(boardLocation);
+            if (fiducials.size() < 2) {
+                throw new Exception(String.format(
+                        "The board side of %s contains only %d placements marked as fiducials, but at least 2 are required.",
+                        boardLocation.getBoard().getName(), fiducials.size()));
+            }
+            List<Placement> mostDistant = getMostDistantPlacements(fiducials);
+            Logger.debug("Chose {} and {} for {}", mostDistant.get(0).getId(),
+                    mostDistant.get(1).getId(), boardLocation);
+            for (Placement fid : mostDistant) {
+                if (fid.getPart() == null) {
+                    throw new Exception(String.format(
+                            "Fiducial %s does not have a valid part assigned.", fid.getId()));
+                }
+                placements.add(fid);
+                idealLocations.add(Utils2D.calculateBoardPlacementLocation(boardLocation,
+                        fid.getLocation()));
+            }
+        }
+
+        Camera camera = Configuration.get().getMachine().getDefaultHead().getDefaultCamera();
+        Location start = camera.getLocation();
+        int[] route = TravelOptimizer.optimize(idealLocations.size(),
+                (node) -> start.getLinearDistanceTo(idealLocations.get(node)),
+                (a, b) -> idealLocations.get(a).getLinearDistanceTo(idealLocations.get(b)), 20);
+
+        Location[] actualLocations = new Location[idealLocations.size()];
+        for (int node : route) {
+            Placement fid = placements.get(node);
+            Logger.debug("Locating {}", fid.getId());
+            actualLocations[node] = getFiducialLocation(idealLocations.get(node), fid.getPart());
+            if (actualLocations[node] == null) {
+                throw new Exception(String.format("Unable to locate %s fiducial of %s.",
+                        node % 2 == 0 ? "first" : "second",
+                        boardLocations.get(node / 2).getBoard().getName()));
+            }
+        }
+
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < boardLocations.size(); i++) {
+            locations.add(calculateBoardLocation(boardLocations.get(i), placements.get(i * 2),
+                    placements.get(i * 2 + 1), actualLocations[i * 2],
+                    actualLocations[i * 2 + 1]));
+        }
+        return locations;
+    }
+
+    private static Location calculateBoardLocation(BoardLocation boardLocation,
+            Placement placementA, Placement placementB, Location actualLocationA,
+            Location actualLocationB) throws Exception {
         // Calculate the linear distance between the ideal points and the
         // located points. If they differ by more than a few percent we
         // probably made a mistake.
@@ -239,11 +324,8 @@ public class ReferenceFiducialLocator implements FiducialLocator {
                 });
                 
                 // And use the closest result
+                Location cameraLocation = camera.getLocation();
                 location = locations.get(0);
-                
-                Logger.debug("{} located at {}", part.getId(), location);
-                // Move to where we actually found the fid
-                camera.moveTo(location);
     
                 if (i > 0) {
                 	//to average, keep a list of all matches except the first, since its probably most off
@@ -251,6 +333,18 @@ public class ReferenceFiducialLocator implements FiducialLocator {
                 }
             
                 Logger.debug("{} located at {}", part.getId(), location);
+
+                // If the fid was found where the camera already is, repeating won't improve it.
+                // Averaging still needs its 2 matches.
+                double tolerance =
+                        convergenceTolerance.convertToUnits(location.getUnits()).getValue();
+                if (tolerance > 0
+                        && location.getLinearDistanceTo(cameraLocation) < tolerance
+                        && (!this.enabledAveraging || matchedLocations.size() >= 2)) {
+                    Logger.debug("{} converged after {} passes", part.getId(), i + 1);
+                    break;
+                }
+
                 // Move to where we actually found the fid
                 camera.moveTo(location);
             }
@@ -330,6 +424,22 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         this.enabledAveraging = enabledAveraging;
     }
 
+    public Length getConvergenceTolerance() {
+        return convergenceTolerance;
+    }
+
+    public void setConvergenceTolerance(Length convergenceTolerance) {
+        this.convergenceTolerance = convergenceTolerance;
+    }
+
+    public boolean isBatchRoute() {
+        return batchRoute;
+    }
+
+    public void setBatchRoute(boolean batchRoute) {
+        this.batchRoute = batchRoute;
+    }
+
     public int getRepeatFiducialRecognition() {
     	return this.repeatFiducialRecognition;
     }
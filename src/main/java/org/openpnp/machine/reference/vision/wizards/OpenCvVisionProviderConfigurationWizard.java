@@ -19,26 +19,49 @@
 
 package org.openpnp.machine.reference.vision.wizards;
 
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.border.TitledBorder;
 
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.machine.reference.vision.OpenCvVisionProvider;
 
+import com.jgoodies.forms.layout.ColumnSpec;
+import com.jgoodies.forms.layout.FormLayout;
+import com.jgoodies.forms.layout.FormSpecs;
+import com.jgoodies.forms.layout.RowSpec;
+
 @SuppressWarnings("serial")
 public class OpenCvVisionProviderConfigurationWizard extends AbstractConfigurationWizard {
     private final OpenCvVisionProvider visionProvider;
 
     private JPanel panelGeneral;
+    private JCheckBox pyramidMatchingCheckbox;
 
     public OpenCvVisionProviderConfigurationWizard(OpenCvVisionProvider visionProvider) {
         this.visionProvider = visionProvider;
 
-        JLabel lblOpencvvisionproviderconfigurationwizardPlaceholder =
-                new JLabel("OpenCvVisionProviderConfigurationWizard Placeholder");
-        contentPanel.add(lblOpencvvisionproviderconfigurationwizardPlaceholder);
+        panelGeneral = new JPanel();
+        panelGeneral.setBorder(new TitledBorder(null, "General", TitledBorder.LEADING,
+                TitledBorder.TOP, null, null));
+        contentPanel.add(panelGeneral);
+        panelGeneral.setLayout(new FormLayout(
+                new ColumnSpec[] {FormSpecs.RELATED_GAP_COLSPEC, ColumnSpec.decode("right:default"),
+                        FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
+                new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
+
+        JLabel lblPyramidMatching = new JLabel("Pyramid Matching?");
+        lblPyramidMatching.setToolTipText(
+                "Find template matches on a downsampled image first. Faster on large images, but a weak match may be missed.");
+        panelGeneral.add(lblPyramidMatching, "2, 2");
+
+        pyramidMatchingCheckbox = new JCheckBox("");
+        panelGeneral.add(pyramidMatchingCheckbox, "4, 2");
     }
 
     @Override
-    public void createBindings() {}
+    public void createBindings() {
+        addWrappedBinding(visionProvider, "pyramidMatching", pyramidMatchingCheckbox, "selected");
+    }
 }
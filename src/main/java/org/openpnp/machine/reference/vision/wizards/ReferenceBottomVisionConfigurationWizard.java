@@ -31,6 +31,7 @@ public class ReferenceBottomVisionConfigurationWizard extends AbstractConfigurat
     private final ReferenceBottomVision bottomVision;
     private JCheckBox enabledCheckbox;
     private JCheckBox preRotCheckbox;
+    private JCheckBox multiNozzleCheckbox;
 
     public ReferenceBottomVisionConfigurationWizard(ReferenceBottomVision bottomVision) {
         this.bottomVision = bottomVision;
@@ -45,6 +46,7 @@ public class ReferenceBottomVisionConfigurationWizard extends AbstractConfigurat
                         FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,
                         FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
                 new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
 
@@ -105,6 +107,14 @@ public class ReferenceBottomVisionConfigurationWizard extends AbstractConfigurat
 
         preRotCheckbox = new JCheckBox("");
         panel.add(preRotCheckbox, "4, 6");
+
+        JLabel lblMultiNozzle = new JLabel("Align nozzles together?");
+        lblMultiNozzle.setToolTipText(
+                "Align the parts on all nozzles that fit in the camera's view with a single capture. Not used with pre-rotate.");
+        panel.add(lblMultiNozzle, "2, 8");
+
+        multiNozzleCheckbox = new JCheckBox("");
+        panel.add(multiNozzleCheckbox, "4, 8");
     }
 
     private void editPipeline() throws Exception {
@@ -130,5 +140,6 @@ public class ReferenceBottomVisionConfigurationWizard extends AbstractConfigurat
     public void createBindings() {
         addWrappedBinding(bottomVision, "enabled", enabledCheckbox, "selected");
         addWrappedBinding(bottomVision, "preRotate", preRotCheckbox, "selected");
+        addWrappedBinding(bottomVision, "multiNozzle", multiNozzleCheckbox, "selected");
     }
 }
@@ -18,6 +18,7 @@ import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.IntegerConverter;
+import org.openpnp.gui.support.LengthConverter;
 import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.machine.reference.vision.ReferenceFiducialLocator;
 import org.openpnp.machine.reference.vision.ReferenceFiducialLocator.PartSettings;
@@ -43,6 +44,8 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
     
     JCheckBox enabledAveragingCheckbox; 
     JTextField textFieldRepeatFiducialRecognition;
+    JTextField textFieldConvergenceTolerance;
+    JCheckBox batchRouteCheckbox;
 
     public ReferenceFiducialLocatorConfigurationWizard(ReferenceFiducialLocator fiducialLocator) {
         this.fiducialLocator = fiducialLocator;
@@ -61,6 +64,10 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -128,6 +135,21 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
         enabledAveragingCheckbox = new JCheckBox("");
         panel.add(enabledAveragingCheckbox, "4, 6");
 
+        JLabel lblConvergenceTolerance = new JLabel("Convergence Tolerance");
+        lblConvergenceTolerance.setToolTipText("Stop repeating the recognition as soon as the fiducial is found closer than this to the camera. 0 always repeats. (default: 0)");
+        panel.add(lblConvergenceTolerance, "2, 8");
+
+        textFieldConvergenceTolerance = new JTextField();
+        panel.add(textFieldConvergenceTolerance, "4, 8");
+        textFieldConvergenceTolerance.setColumns(6);
+
+        JLabel lblBatchRoute = new JLabel("Batch Route?");
+        lblBatchRoute.setToolTipText("Visit the fiducials of all the boards in the job in one planned route, instead of board by board.");
+        panel.add(lblBatchRoute, "2, 10");
+
+        batchRouteCheckbox = new JCheckBox("");
+        panel.add(batchRouteCheckbox, "4, 10");
+
     }
     
     private void editPipeline() throws Exception {
@@ -165,11 +187,15 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
     @Override
     public void createBindings() {
     	IntegerConverter intConverter = new IntegerConverter();
+    	LengthConverter lengthConverter = new LengthConverter();
     	
     	addWrappedBinding(fiducialLocator, "enabledAveraging", enabledAveragingCheckbox, "selected");
     	addWrappedBinding(fiducialLocator, "repeatFiducialRecognition", textFieldRepeatFiducialRecognition, "text", intConverter);
+    	addWrappedBinding(fiducialLocator, "convergenceTolerance", textFieldConvergenceTolerance, "text", lengthConverter);
+    	addWrappedBinding(fiducialLocator, "batchRoute", batchRouteCheckbox, "selected");
     	
     	ComponentDecorators.decorateWithAutoSelect(textFieldRepeatFiducialRecognition);
+    	ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldConvergenceTolerance);
     }
     
     @Override
@@ -23,9 +23,12 @@ import javax.swing.BoxLayout;
 import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
 import javax.swing.border.TitledBorder;
 
+import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
+import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor;
 
 import com.jgoodies.forms.layout.ColumnSpec;
@@ -37,6 +40,9 @@ import com.jgoodies.forms.layout.RowSpec;
 public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigurationWizard {
     private final ReferencePnpJobProcessor jobProcessor;
     private JCheckBox parkWhenComplete;
+    private JCheckBox optimizePlacementOrder;
+    private JTextField saveIntervalSeconds;
+    private JCheckBox prefeed;
 
     public ReferencePnpJobProcessorConfigurationWizard(ReferencePnpJobProcessor jobProcessor) {
         this.jobProcessor = jobProcessor;
@@ -48,17 +54,52 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
         contentPanel.add(panelGeneral);
         panelGeneral.setLayout(new FormLayout(
                 new ColumnSpec[] {FormSpecs.DEFAULT_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
-                new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, RowSpec.decode("16px"),}));
+                new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, RowSpec.decode("16px"),
+                        FormSpecs.RELATED_GAP_ROWSPEC, RowSpec.decode("16px"),
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, RowSpec.decode("16px"),}));
 
         JLabel lblParkWhenComplete = new JLabel("Park When Complete");
         panelGeneral.add(lblParkWhenComplete, "1, 2, right, top");
 
         parkWhenComplete = new JCheckBox("");
         panelGeneral.add(parkWhenComplete, "2, 2");
+
+        JLabel lblOptimizePlacementOrder = new JLabel("Optimize Placement Order");
+        lblOptimizePlacementOrder.setToolTipText(
+                "Reorder placements before the job starts to reduce travel between feeders and the board.");
+        panelGeneral.add(lblOptimizePlacementOrder, "1, 4, right, top");
+
+        optimizePlacementOrder = new JCheckBox("");
+        panelGeneral.add(optimizePlacementOrder, "2, 4");
+
+        JLabel lblSaveIntervalSeconds = new JLabel("Save Interval (s)");
+        lblSaveIntervalSeconds.setToolTipText(
+                "How often the job and configuration are saved while a job runs. Placements in between, and the state of their feeders, are recorded in a journal next to the job file. 0 saves after every placement.");
+        panelGeneral.add(lblSaveIntervalSeconds, "1, 6, right, default");
+
+        saveIntervalSeconds = new JTextField();
+        saveIntervalSeconds.setColumns(10);
+        panelGeneral.add(saveIntervalSeconds, "2, 6");
+
+        JLabel lblPrefeed = new JLabel("Prefeed Next Cycle");
+        lblPrefeed.setToolTipText(
+                "Feed the parts for the next cycle while the current one is aligned and placed. Only feeders that can feed without the head, such as auto feeders, support this.");
+        panelGeneral.add(lblPrefeed, "1, 8, right, top");
+
+        prefeed = new JCheckBox("");
+        panelGeneral.add(prefeed, "2, 8");
     }
 
     @Override
     public void createBindings() {
         addWrappedBinding(jobProcessor, "parkWhenComplete", parkWhenComplete, "selected");
+        addWrappedBinding(jobProcessor, "optimizePlacementOrder", optimizePlacementOrder,
+                "selected");
+        addWrappedBinding(jobProcessor, "saveIntervalSeconds", saveIntervalSeconds, "text",
+                new IntegerConverter());
+        addWrappedBinding(jobProcessor, "prefeed", prefeed, "selected");
+
+        ComponentDecorators.decorateWithAutoSelect(saveIntervalSeconds);
     }
 }
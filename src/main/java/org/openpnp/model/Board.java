@@ -24,7 +24,9 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import org.simpleframework.xml.Attribute;
@@ -106,6 +108,16 @@ public class Board extends AbstractModelObject implements PropertyChangeListener
         firePropertyChange("fiducials", oldValue, fiducials);
     }
 
+    /**
+     * Adds all of the fiducials with a single copy of the list and a single property change.
+     */
+    public void addFiducials(Collection<Fiducial> fiducials) {
+        ArrayList<Fiducial> oldValue = this.fiducials;
+        this.fiducials = new ArrayList<>(this.fiducials);
+        this.fiducials.addAll(fiducials);
+        firePropertyChange("fiducials", oldValue, this.fiducials);
+    }
+
     public void removeFiducial(Fiducial fiducial) {
         ArrayList<Fiducial> oldValue = fiducials;
         fiducials = new ArrayList<>(fiducials);
@@ -137,6 +149,53 @@ public class Board extends AbstractModelObject implements PropertyChangeListener
         }
     }
 
+    /**
+     * Adds all of the placements with a single copy of the list and a single property change,
+     * rather than one of each per placement as addPlacement() would.
+     */
+    public void addPlacements(Collection<Placement> placements) {
+        Object oldValue = this.placements;
+        this.placements = new ArrayList<>(this.placements);
+        this.placements.addAll(placements);
+        firePropertyChange("placements", oldValue, this.placements);
+        for (Placement placement : placements) {
+            if (placement != null) {
+                placement.addPropertyChangeListener(this);
+            }
+        }
+    }
+
+    public void removePlacements(Collection<Placement> placements) {
+        Object oldValue = this.placements;
+        this.placements = new ArrayList<>(this.placements);
+        this.placements.removeAll(new HashSet<>(placements));
+        firePropertyChange("placements", oldValue, this.placements);
+        for (Placement placement : placements) {
+            if (placement != null) {
+                placement.removePropertyChangeListener(this);
+            }
+        }
+    }
+
+    /**
+     * Replaces all of the placements with a single property change.
+     */
+    public void setPlacements(Collection<Placement> placements) {
+        ArrayList<Placement> oldValue = this.placements;
+        this.placements = new ArrayList<>(placements);
+        for (Placement placement : oldValue) {
+            if (placement != null) {
+                placement.removePropertyChangeListener(this);
+            }
+        }
+        firePropertyChange("placements", oldValue, this.placements);
+        for (Placement placement : this.placements) {
+            if (placement != null) {
+                placement.addPropertyChangeListener(this);
+            }
+        }
+    }
+
     public List<BoardPad> getSolderPastePads() {
         return Collections.unmodifiableList(solderPastePads);
     }
@@ -161,6 +220,53 @@ public class Board extends AbstractModelObject implements PropertyChangeListener
         }
     }
 
+    /**
+     * Adds all of the pads with a single copy of the list and a single property change. A Gerber
+     * paste layer can have tens of thousands of pads.
+     */
+    public void addSolderPastePads(Collection<BoardPad> pads) {
+        Object oldValue = solderPastePads;
+        solderPastePads = new ArrayList<>(solderPastePads);
+        solderPastePads.addAll(pads);
+        firePropertyChange("solderPastePads", oldValue, solderPastePads);
+        for (BoardPad pad : pads) {
+            if (pad != null) {
+                pad.addPropertyChangeListener(this);
+            }
+        }
+    }
+
+    public void removeSolderPastePads(Collection<BoardPad> pads) {
+        Object oldValue = solderPastePads;
+        solderPastePads = new ArrayList<>(solderPastePads);
+        solderPastePads.removeAll(new HashSet<>(pads));
+        firePropertyChange("solderPastePads", oldValue, solderPastePads);
+        for (BoardPad pad : pads) {
+            if (pad != null) {
+                pad.removePropertyChangeListener(this);
+            }
+        }
+    }
+
+    /**
+     * Replaces all of the pads with a single property change.
+     */
+    public void setSolderPastePads(Collection<BoardPad> pads) {
+        ArrayList<BoardPad> oldValue = solderPastePads;
+        solderPastePads = new ArrayList<>(pads);
+        for (BoardPad pad : oldValue) {
+            if (pad != null) {
+                pad.removePropertyChangeListener(this);
+            }
+        }
+        firePropertyChange("solderPastePads", oldValue, solderPastePads);
+        for (BoardPad pad : solderPastePads) {
+            if (pad != null) {
+                pad.addPropertyChangeListener(this);
+            }
+        }
+    }
+
 
     public String getName() {
         return name;
@@ -19,16 +19,21 @@
 
 package org.openpnp.model;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.prefs.Preferences;
 
 import org.apache.commons.io.FileUtils;
@@ -52,6 +57,12 @@ import com.google.common.eventbus.EventBus;
 public class Configuration extends AbstractModelObject {
     private static Configuration instance;
 
+    /**
+     * The Persister caches what it learns about each class through reflection and is safe to
+     * use from several threads, so every read and write shares this one.
+     */
+    private static final Serializer serializer = newSerializer();
+
     private static final String PREF_UNITS = "Configuration.units";
     private static final String PREF_UNITS_DEF = "Millimeters";
 
@@ -212,17 +223,19 @@ public class Configuration extends AbstractModelObject {
 
     public synchronized void load() throws Exception {
         boolean forceSave = false;
+        File partsSnapshotXml = null;
         boolean overrideUserConfig = Boolean.getBoolean("overrideUserConfig");
 
         try {
             File file = new File(configurationDirectory, "packages.xml");
-            if (overrideUserConfig || !file.exists()) {
+            boolean defaults = overrideUserConfig || !file.exists();
+            if (defaults) {
                 Logger.info("No packages.xml found in configuration directory, loading defaults.");
                 file = File.createTempFile("packages", "xml");
                 FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/packages.xml"), file);
                 forceSave = true;
             }
-            loadPackages(file);
+            loadPackages(file, !defaults);
         }
         catch (Exception e) {
             String message = e.getMessage();
@@ -235,13 +248,16 @@ public class Configuration extends AbstractModelObject {
 
         try {
             File file = new File(configurationDirectory, "parts.xml");
-            if (overrideUserConfig || !file.exists()) {
+            boolean defaults = overrideUserConfig || !file.exists();
+            if (defaults) {
                 Logger.info("No parts.xml found in configuration directory, loading defaults.");
                 file = File.createTempFile("parts", "xml");
                 FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/parts.xml"), file);
                 forceSave = true;
             }
-            loadParts(file);
+            if (loadParts(file, !defaults) && !defaults) {
+                partsSnapshotXml = file;
+            }
         }
         catch (Exception e) {
             String message = e.getMessage();
@@ -276,6 +292,11 @@ public class Configuration extends AbstractModelObject {
             listener.configurationLoaded(this);
         }
 
+        // Now that the parts have their packages, write the snapshot the next start will use.
+        if (partsSnapshotXml != null) {
+            ConfigurationSnapshot.writeParts(partsSnapshotXml, parts.values());
+        }
+
         if (forceSave) {
             Logger.info("Defaults were loaded. Saving to configuration directory.");
             configurationDirectory.mkdirs();
@@ -290,23 +311,49 @@ public class Configuration extends AbstractModelObject {
     }
 
     public synchronized void save() throws Exception {
+        // The three files don't depend on each other, so packages and parts are written on other
+        // threads while the machine is written on this one.
+        Future<Void> packagesSave = ForkJoinPool.commonPool().submit(() -> {
+            savePackages(new File(configurationDirectory, "packages.xml"));
+            return null;
+        });
+        Future<Void> partsSave = ForkJoinPool.commonPool().submit(() -> {
+            saveParts(new File(configurationDirectory, "parts.xml"));
+            return null;
+        });
+        Exception error = null;
         try {
             saveMachine(new File(configurationDirectory, "machine.xml"));
         }
         catch (Exception e) {
-            throw new Exception("Error while saving machine.xml (" + e.getMessage() + ")", e);
+            error = new Exception("Error while saving machine.xml (" + e.getMessage() + ")", e);
         }
+        // Wait for both before returning, even if one failed, so no write outlives the save.
         try {
-            savePackages(new File(configurationDirectory, "packages.xml"));
+            waitForSave(packagesSave, "packages.xml");
         }
         catch (Exception e) {
-            throw new Exception("Error while saving packages.xml (" + e.getMessage() + ")", e);
+            error = error == null ? e : error;
         }
         try {
-            saveParts(new File(configurationDirectory, "parts.xml"));
+            waitForSave(partsSave, "parts.xml");
         }
         catch (Exception e) {
-            throw new Exception("Error while saving parts.xml (" + e.getMessage() + ")", e);
+            error = error == null ? e : error;
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static void waitForSave(Future<Void> save, String name) throws Exception {
+        try {
+            save.get();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new Exception("Error while saving " + name + " (" + cause.getMessage() + ")",
+                    cause);
         }
     }
 
@@ -370,8 +417,7 @@ public class Configuration extends AbstractModelObject {
         if (!file.exists()) {
             Board board = new Board(file);
             board.setName(file.getName());
-            Serializer serializer = createSerializer();
-            serializer.write(board, file);
+            serializeObject(board, file);
         }
         file = file.getCanonicalFile();
         if (boards.containsKey(file)) {
@@ -383,19 +429,32 @@ public class Configuration extends AbstractModelObject {
         return board;
     }
     
+    /**
+     * Write the object to a temporary file next to the real one and then rename it over the real
+     * one, so that an error or crash part way through never leaves a partial file behind.
+     */
     private static void serializeObject(Object o, File file) throws Exception {
-        Serializer serializer = createSerializer();
-        // This write forces any errors that will appear to happen before we start writing to
-        // the file, which keeps us from writing a partial configuration to the real file.
-        serializer.write(o, new ByteArrayOutputStream());
-        FileOutputStream out = new FileOutputStream(file);
-        serializer.write(o, out);
-        out.write('\n');
-        out.close();
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                serializer.write(o, out);
+                out.write('\n');
+                out.getFD().sync();
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            temp.delete();
+        }
     }
 
     private void loadMachine(File file) throws Exception {
-        Serializer serializer = createSerializer();
         MachineConfigurationHolder holder = serializer.read(MachineConfigurationHolder.class, file);
         machine = holder.machine;
     }
@@ -406,11 +465,21 @@ public class Configuration extends AbstractModelObject {
         serializeObject(holder, file);
     }
 
-    private void loadPackages(File file) throws Exception {
-        Serializer serializer = createSerializer();
-        PackagesConfigurationHolder holder =
-                serializer.read(PackagesConfigurationHolder.class, file);
-        for (Package pkg : holder.packages) {
+    /**
+     * Load the packages from the file's ConfigurationSnapshot if it is current, otherwise from the
+     * XML, after which the snapshot is written for next time.
+     */
+    private void loadPackages(File file, boolean useSnapshot) throws Exception {
+        List<Package> packages = useSnapshot ? ConfigurationSnapshot.readPackages(file) : null;
+        if (packages == null) {
+            PackagesConfigurationHolder holder =
+                    serializer.read(PackagesConfigurationHolder.class, file);
+            packages = holder.packages;
+            if (useSnapshot) {
+                ConfigurationSnapshot.writePackages(file, packages);
+            }
+        }
+        for (Package pkg : packages) {
             addPackage(pkg);
         }
     }
@@ -419,24 +488,38 @@ public class Configuration extends AbstractModelObject {
         PackagesConfigurationHolder holder = new PackagesConfigurationHolder();
         holder.packages = new ArrayList<>(packages.values());
         serializeObject(holder, file);
+        ConfigurationSnapshot.writePackages(file, holder.packages);
     }
 
-    private void loadParts(File file) throws Exception {
-        Serializer serializer = createSerializer();
-        PartsConfigurationHolder holder = serializer.read(PartsConfigurationHolder.class, file);
-        for (Part part : holder.parts) {
+    /**
+     * Load the parts like loadPackages(), from the snapshot if it is current. The packages must
+     * already be loaded. The snapshot is not written here, because parts read from the XML only
+     * find their packages once loading is complete.
+     *
+     * @return True if the parts were read from the XML.
+     */
+    private boolean loadParts(File file, boolean useSnapshot) throws Exception {
+        List<Part> parts = useSnapshot ? ConfigurationSnapshot.readParts(file, this::getPackage)
+                : null;
+        boolean fromXml = parts == null;
+        if (fromXml) {
+            PartsConfigurationHolder holder = serializer.read(PartsConfigurationHolder.class, file);
+            parts = holder.parts;
+        }
+        for (Part part : parts) {
             addPart(part);
         }
+        return fromXml;
     }
 
     private void saveParts(File file) throws Exception {
         PartsConfigurationHolder holder = new PartsConfigurationHolder();
         holder.parts = new ArrayList<>(parts.values());
         serializeObject(holder, file);
+        ConfigurationSnapshot.writeParts(file, holder.parts);
     }
 
     public Job loadJob(File file) throws Exception {
-        Serializer serializer = createSerializer();
         Job job = serializer.read(Job.class, file);
         job.setFile(file);
 
@@ -462,11 +545,18 @@ public class Configuration extends AbstractModelObject {
 
         job.setDirty(false);
 
+        // Apply any placements and feeder states recorded since the job was last saved. The job
+        // is left dirty so that the next save folds them into the job file.
+        int replayed = new PlacementJournal(file).replay(job, getMachine());
+        if (replayed > 0) {
+            Logger.info("Replayed {} placement journal entries for {}", replayed, file);
+            job.setDirty(true);
+        }
+
         return job;
     }
 
     public void saveJob(Job job, File file) throws Exception {
-        Serializer serializer = createSerializer();
         Set<Board> boards = new HashSet<>();
         // Fix the paths to any boards in the Job
         for (BoardLocation boardLocation : job.getBoardLocations()) {
@@ -486,10 +576,11 @@ public class Configuration extends AbstractModelObject {
             saveBoard(board);
         }
         // Save the job
-        serializer.write(job, new ByteArrayOutputStream());
-        serializer.write(job, file);
+        serializeObject(job, file);
         job.setFile(file);
         job.setDirty(false);
+        // The job file now has everything the journal had.
+        new PlacementJournal(file).delete();
     }
     
     public String getImgurClientId() {
@@ -497,26 +588,29 @@ public class Configuration extends AbstractModelObject {
     }
 
     public void saveBoard(Board board) throws Exception {
-        Serializer serializer = createSerializer();
-        serializer.write(board, new ByteArrayOutputStream());
-        serializer.write(board, board.getFile());
+        serializeObject(board, board.getFile());
         board.setDirty(false);
     }
 
     private Board loadBoard(File file) throws Exception {
-        Serializer serializer = createSerializer();
         Board board = serializer.read(Board.class, file);
         board.setFile(file);
         board.setDirty(false);
         return board;
     }
 
+    /**
+     * Returns the shared Serializer configured for OpenPnP's XML files.
+     */
     public static Serializer createSerializer() {
+        return serializer;
+    }
+
+    private static Serializer newSerializer() {
         Style style = new HyphenStyle();
         Format format = new Format(style);
         AnnotationStrategy strategy = new AnnotationStrategy();
-        Serializer serializer = new Persister(strategy, format);
-        return serializer;
+        return new Persister(strategy, format);
     }
 
     public static String createId(String prefix) {
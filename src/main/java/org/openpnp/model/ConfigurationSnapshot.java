@@ -0,0 +1,233 @@
+package org.openpnp.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import org.openpnp.model.Footprint.Pad;
+import org.pmw.tinylog.Logger;
+
+/**
+ * A binary copy of packages.xml or parts.xml that is much faster to read than the XML. It is
+ * written next to the XML file whenever the XML is saved or had to be parsed, and records the
+ * length and modification time the XML had at that moment. It is only read when the XML still
+ * matches, so the XML stays the real configuration and editing it by hand just causes it to be
+ * parsed again on the next start.
+ *
+ * The format covers every field Package, Footprint, Pad and Part save to XML. When one of those
+ * classes gets a new field it must be added here and FORMAT_VERSION must be increased, which
+ * makes existing snapshots stale.
+ */
+public class ConfigurationSnapshot {
+    private static final int MAGIC = 0x4F504E53;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int TYPE_PACKAGES = 1;
+
+    private static final int TYPE_PARTS = 2;
+
+    public static File getFile(File xmlFile) {
+        return new File(xmlFile.getPath() + ".snapshot");
+    }
+
+    /**
+     * Returns the packages in the snapshot of the given packages.xml, or null if there is no
+     * current snapshot.
+     */
+    public static List<Package> readPackages(File xmlFile) {
+        try (DataInputStream in = open(xmlFile, TYPE_PACKAGES)) {
+            if (in == null) {
+                return null;
+            }
+            int count = in.readInt();
+            List<Package> packages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Package pkg = new Package(readString(in));
+                pkg.setDescription(readString(in));
+                pkg.setFootprint(in.readBoolean() ? readFootprint(in) : null);
+                packages.add(pkg);
+            }
+            return packages;
+        }
+        catch (Exception e) {
+            Logger.warn("Unable to read {}, reading the XML instead ({})", getFile(xmlFile),
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the parts in the snapshot of the given parts.xml, or null if there is no current
+     * snapshot. Each part's package is looked up by id with the given function.
+     */
+    public static List<Part> readParts(File xmlFile, Function<String, Package> packages) {
+        try (DataInputStream in = open(xmlFile, TYPE_PARTS)) {
+            if (in == null) {
+                return null;
+            }
+            int count = in.readInt();
+            List<Part> parts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Part part = new Part(readString(in));
+                part.setName(readString(in));
+                String units = readString(in);
+                double height = in.readDouble();
+                part.setHeight(
+                        units == null ? null : new Length(height, LengthUnit.valueOf(units)));
+                part.setSpeed(in.readDouble());
+                String packageId = readString(in);
+                part.setPackage(packageId == null ? null : packages.apply(packageId));
+                parts.add(part);
+            }
+            return parts;
+        }
+        catch (Exception e) {
+            Logger.warn("Unable to read {}, reading the XML instead ({})", getFile(xmlFile),
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the snapshot of the given packages.xml, which must already have been written.
+     * Failures are logged, since the XML is all that is really needed.
+     */
+    public static void writePackages(File xmlFile, Collection<Package> packages) {
+        write(xmlFile, TYPE_PACKAGES, out -> {
+            out.writeInt(packages.size());
+            for (Package pkg : packages) {
+                writeString(out, pkg.getId());
+                writeString(out, pkg.getDescription());
+                out.writeBoolean(pkg.getFootprint() != null);
+                if (pkg.getFootprint() != null) {
+                    writeFootprint(out, pkg.getFootprint());
+                }
+            }
+        });
+    }
+
+    /**
+     * Write the snapshot of the given parts.xml, which must already have been written. Failures
+     * are logged, since the XML is all that is really needed.
+     */
+    public static void writeParts(File xmlFile, Collection<Part> parts) {
+        write(xmlFile, TYPE_PARTS, out -> {
+            out.writeInt(parts.size());
+            for (Part part : parts) {
+                writeString(out, part.getId());
+                writeString(out, part.getName());
+                Length height = part.getHeight();
+                writeString(out, height.getUnits() == null ? null : height.getUnits().name());
+                out.writeDouble(height.getValue());
+                out.writeDouble(part.getSpeed());
+                writeString(out, part.getPackage() == null ? null : part.getPackage().getId());
+            }
+        });
+    }
+
+    private static Footprint readFootprint(DataInputStream in) throws IOException {
+        Footprint footprint = new Footprint();
+        String units = readString(in);
+        footprint.setUnits(units == null ? null : LengthUnit.valueOf(units));
+        footprint.setBodyWidth(in.readDouble());
+        footprint.setBodyHeight(in.readDouble());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Pad pad = new Pad();
+            pad.setName(readString(in));
+            pad.setX(in.readDouble());
+            pad.setY(in.readDouble());
+            pad.setWidth(in.readDouble());
+            pad.setHeight(in.readDouble());
+            pad.setRotation(in.readDouble());
+            pad.setRoundness(in.readDouble());
+            footprint.addPad(pad);
+        }
+        return footprint;
+    }
+
+    private static void writeFootprint(DataOutputStream out, Footprint footprint)
+            throws IOException {
+        writeString(out, footprint.getUnits() == null ? null : footprint.getUnits().name());
+        out.writeDouble(footprint.getBodyWidth());
+        out.writeDouble(footprint.getBodyHeight());
+        out.writeInt(footprint.getPads().size());
+        for (Pad pad : footprint.getPads()) {
+            writeString(out, pad.getName());
+            out.writeDouble(pad.getX());
+            out.writeDouble(pad.getY());
+            out.writeDouble(pad.getWidth());
+            out.writeDouble(pad.getHeight());
+            out.writeDouble(pad.getRotation());
+            out.writeDouble(pad.getRoundness());
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    /**
+     * Opens the snapshot and reads its header. Returns null if there is no snapshot or it doesn't
+     * match the XML file.
+     */
+    private static DataInputStream open(File xmlFile, int type) throws IOException {
+        File file = getFile(xmlFile);
+        if (!file.exists() || !xmlFile.exists()) {
+            return null;
+        }
+        DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != type
+                || in.readLong() != xmlFile.length() || in.readLong() != xmlFile.lastModified()) {
+            in.close();
+            Logger.debug("{} is out of date.", file);
+            return null;
+        }
+        return in;
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void write(File xmlFile, int type, Body body) {
+        File file = getFile(xmlFile);
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(type);
+                out.writeLong(xmlFile.length());
+                out.writeLong(xmlFile.lastModified());
+                body.write(out);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (Exception e) {
+            Logger.warn("Unable to write {} ({})", file, e.getMessage());
+            temp.delete();
+        }
+    }
+}
@@ -23,7 +23,9 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import org.openpnp.util.IdentifiableList;
@@ -77,6 +79,45 @@ public class Job extends AbstractModelObject implements PropertyChangeListener {
         boardLocation.removePropertyChangeListener(this);
     }
 
+    /**
+     * Adds all of the board locations with a single copy of the list and a single property
+     * change.
+     */
+    public void addBoardLocations(Collection<BoardLocation> boardLocations) {
+        Object oldValue = this.boardLocations;
+        this.boardLocations = new ArrayList<>(this.boardLocations);
+        this.boardLocations.addAll(boardLocations);
+        firePropertyChange("boardLocations", oldValue, this.boardLocations);
+        for (BoardLocation boardLocation : boardLocations) {
+            boardLocation.addPropertyChangeListener(this);
+        }
+    }
+
+    public void removeBoardLocations(Collection<BoardLocation> boardLocations) {
+        Object oldValue = this.boardLocations;
+        this.boardLocations = new ArrayList<>(this.boardLocations);
+        this.boardLocations.removeAll(new HashSet<>(boardLocations));
+        firePropertyChange("boardLocations", oldValue, this.boardLocations);
+        for (BoardLocation boardLocation : boardLocations) {
+            boardLocation.removePropertyChangeListener(this);
+        }
+    }
+
+    /**
+     * Replaces all of the board locations with a single property change.
+     */
+    public void setBoardLocations(Collection<BoardLocation> boardLocations) {
+        ArrayList<BoardLocation> oldValue = this.boardLocations;
+        this.boardLocations = new ArrayList<>(boardLocations);
+        for (BoardLocation boardLocation : oldValue) {
+            boardLocation.removePropertyChangeListener(this);
+        }
+        firePropertyChange("boardLocations", (Object) oldValue, this.boardLocations);
+        for (BoardLocation boardLocation : this.boardLocations) {
+            boardLocation.addPropertyChangeListener(this);
+        }
+    }
+
     public void removeAllBoards() {
         ArrayList<BoardLocation> oldValue = boardLocations;
         boardLocations = new ArrayList<>();
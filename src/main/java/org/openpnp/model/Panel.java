@@ -1,6 +1,9 @@
 package org.openpnp.model;
 
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.openpnp.util.IdentifiableList;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
@@ -136,8 +139,8 @@ public class Panel extends AbstractModelObject implements Identifiable {
     public void setLocation(Job job) {
         BoardLocation rootPCB = job.getBoardLocations().get(0);
 
-        job.removeAllBoards();
-        job.addBoardLocation(rootPCB);
+        List<BoardLocation> boardLocations = new ArrayList<>();
+        boardLocations.add(rootPCB);
 
         double pcbWidthX = rootPCB.getBoard().getDimensions().getX();
         double pcbHeightY = rootPCB.getBoard().getDimensions().getY();
@@ -163,8 +166,9 @@ public class Panel extends AbstractModelObject implements Identifiable {
                 newPCB.setLocation(newPCB.getLocation().rotateXyCenterPoint(rootPCB.getLocation(),
                         rootPCB.getLocation().getRotation()));
 
-                job.addBoardLocation(newPCB);
+                boardLocations.add(newPCB);
             }
         }
+        job.setBoardLocations(boardLocations);
     }
 }
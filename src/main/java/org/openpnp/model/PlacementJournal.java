@@ -0,0 +1,160 @@
+package org.openpnp.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Machine;
+import org.pmw.tinylog.Logger;
+
+/**
+ * An append only log of the placed state changes of a Job that has been saved to a file. It lets
+ * the job processor record each placement with one small synced write instead of saving the whole
+ * Job, and it is replayed onto the Job when the Job is loaded again, so nothing is lost if OpenPnP
+ * stops before the next save.
+ *
+ * The journal lives next to the job file and is deleted whenever the Job is saved, since the save
+ * contains everything that was in it. Each line is a board location index, a placement id and the
+ * placed state, separated by tabs.
+ *
+ * Feeders keep state such as their feed count in the machine configuration, which is not saved
+ * with every placement either. A placement can be followed by a line with "feeder", the feeder
+ * id and the feeder's Feeder.getJournalState(), separated by tabs, which is replayed onto the
+ * machine's feeders.
+ */
+public class PlacementJournal {
+    private static final String FEEDER = "feeder";
+
+    private final File file;
+
+    public PlacementJournal(File jobFile) {
+        this.file = new File(jobFile.getPath() + ".placed");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Append a placed state change and sync it to disk before returning.
+     */
+    public void append(Job job, BoardLocation boardLocation, String placementId, boolean placed)
+            throws Exception {
+        append(job, boardLocation, placementId, placed, null);
+    }
+
+    /**
+     * Append a placed state change, followed by the state of the feeder the part came from if it
+     * has any, and sync them to disk before returning.
+     */
+    public void append(Job job, BoardLocation boardLocation, String placementId, boolean placed,
+            Feeder feeder) throws Exception {
+        int index = job.getBoardLocations().indexOf(boardLocation);
+        if (index < 0) {
+            throw new Exception("Board location " + boardLocation + " is not in the job.");
+        }
+        String lines = index + "\t" + placementId + "\t" + placed + "\n";
+        String state = feeder == null ? null : feeder.getJournalState();
+        if (state != null) {
+            lines += FEEDER + "\t" + feeder.getId() + "\t" + state + "\n";
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(lines.getBytes(StandardCharsets.UTF_8));
+            out.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Apply the journal, if there is one, to the Job. Feeder lines are skipped.
+     *
+     * @return The number of changes applied.
+     */
+    public int replay(Job job) throws Exception {
+        return replay(job, null);
+    }
+
+    /**
+     * Apply the journal, if there is one, to the Job and the Machine's feeders. Lines that don't
+     * match the Job or the Machine, such as a last line that was only partly written, are
+     * skipped. The last state journaled for a feeder wins.
+     *
+     * @param machine The Machine whose feeders are restored, or null to skip feeder lines.
+     * @return The number of changes applied.
+     */
+    public int replay(Job job, Machine machine) throws Exception {
+        if (!file.exists()) {
+            return 0;
+        }
+        List<BoardLocation> boardLocations = job.getBoardLocations();
+        int count = 0;
+        String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        // A last line without a newline was cut off while it was written. It may still parse,
+        // for example a feed count with its last digits missing, so it is never applied.
+        int end = text.lastIndexOf('\n') + 1;
+        if (end < text.length()) {
+            Logger.warn("Skipping placement journal line \"{}\"", text.substring(end));
+        }
+        String[] lines = end == 0 ? new String[0] : text.substring(0, end).split("\n");
+        for (String line : lines) {
+            int first = line.indexOf('\t');
+            int last = line.lastIndexOf('\t');
+            if (first < 0 || last <= first) {
+                Logger.warn("Skipping placement journal line \"{}\"", line);
+                continue;
+            }
+            if (line.substring(0, first).equals(FEEDER)) {
+                if (machine != null && replayFeeder(machine, line, first)) {
+                    count++;
+                }
+                continue;
+            }
+            String state = line.substring(last + 1);
+            if (!state.equals("true") && !state.equals("false")) {
+                Logger.warn("Skipping placement journal line \"{}\"", line);
+                continue;
+            }
+            int index;
+            try {
+                index = Integer.parseInt(line.substring(0, first));
+            }
+            catch (NumberFormatException e) {
+                Logger.warn("Skipping placement journal line \"{}\"", line);
+                continue;
+            }
+            if (index < 0 || index >= boardLocations.size()) {
+                Logger.warn("Skipping placement journal line \"{}\"", line);
+                continue;
+            }
+            boardLocations.get(index).setPlaced(line.substring(first + 1, last),
+                    Boolean.parseBoolean(state));
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean replayFeeder(Machine machine, String line, int first) {
+        int second = line.indexOf('\t', first + 1);
+        Feeder feeder = machine.getFeeder(line.substring(first + 1, second));
+        if (feeder == null) {
+            Logger.warn("Skipping placement journal line \"{}\"", line);
+            return false;
+        }
+        try {
+            feeder.setJournalState(line.substring(second + 1));
+            return true;
+        }
+        catch (Exception e) {
+            Logger.warn("Skipping placement journal line \"{}\" ({})", line, e.getMessage());
+            return false;
+        }
+    }
+
+    public void delete() throws Exception {
+        if (file.exists() && !file.delete()) {
+            throw new Exception("Unable to delete placement journal " + file);
+        }
+    }
+}
@@ -22,6 +22,7 @@ package org.openpnp.spi;
 import java.awt.image.BufferedImage;
 import java.io.Closeable;
 
+import org.opencv.core.Mat;
 import org.openpnp.CameraListener;
 import org.openpnp.model.Location;
 
@@ -67,6 +68,22 @@ public interface Camera extends HeadMountable, WizardConfigurable,
      */
     public BufferedImage settleAndCapture();
 
+    /**
+     * Same as capture(), but returns the image as an OpenCV Mat. Vision code that works on Mats
+     * should prefer this, since cameras that produce Mats natively can skip converting to and from
+     * BufferedImage. The caller owns the returned Mat and must release it.
+     * 
+     * @return
+     */
+    public Mat captureMat();
+
+    /**
+     * Same as captureMat(), but waits the settle time before capturing.
+     * 
+     * @return
+     */
+    public Mat settleAndCaptureMat();
+
     /**
      * Registers a listener to receive continuous images from the camera at a rate less than or
      * equal to maximumFps images per second.
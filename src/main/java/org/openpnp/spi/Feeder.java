@@ -75,6 +75,49 @@ public interface Feeder extends Identifiable, Named, WizardConfigurable, Propert
      */
     public void feed(Nozzle nozzle) throws Exception;
 
+    /**
+     * Commands the Feeder to present its next part now, ahead of the feed(Nozzle) call that will
+     * pick it, so that the mechanical feed can happen while the machine is busy elsewhere. A
+     * Feeder that supports this remembers that the part is ready and the next feed(Nozzle) does
+     * not feed again. It must not move the Head. Feeders that can't do this ignore the call.
+     * 
+     * @param nozzle The Nozzle that is expected to pick the part.
+     * @throws Exception
+     */
+    public default void prefeed(Nozzle nozzle) throws Exception {
+    }
+
+    /**
+     * Return true if a part has been presented by prefeed(Nozzle) and not yet been taken by
+     * feed(Nozzle).
+     * 
+     * @return
+     */
+    public default boolean isPrefed() {
+        return false;
+    }
+
+    /**
+     * Returns the part of the Feeder's state that changes as it feeds, such as how many parts it
+     * has fed, as a single line of text, or null if it has none. The job processor journals it
+     * with each placement, so that it can be restored with setJournalState(String) if OpenPnP
+     * stops before the machine configuration is saved again.
+     * 
+     * @return
+     */
+    public default String getJournalState() {
+        return null;
+    }
+
+    /**
+     * Restores state returned by getJournalState().
+     * 
+     * @param state
+     * @throws Exception If the state can't be parsed.
+     */
+    public default void setJournalState(String state) throws Exception {
+    }
+
     public void postPick(Nozzle nozzle) throws Exception;
     
     public int getRetryCount();
@@ -1,5 +1,8 @@
 package org.openpnp.spi;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Location;
@@ -16,6 +19,23 @@ public interface FiducialLocator extends PropertySheetHolder {
 
     public Location locateBoard(BoardLocation boardLocation, boolean checkPanel) throws Exception;
 
+    /**
+     * Locate several boards. The default locates them one at a time, in order. Implementations
+     * may visit the fiducials of all the boards together, in any order.
+     * 
+     * @param boardLocations
+     * @return The location of each board, in the same order as boardLocations.
+     * @throws Exception
+     */
+    public default List<Location> locateBoards(List<BoardLocation> boardLocations)
+            throws Exception {
+        List<Location> locations = new ArrayList<>();
+        for (BoardLocation boardLocation : boardLocations) {
+            locations.add(locateBoard(boardLocation));
+        }
+        return locations;
+    }
+
     public Location getHomeFiducialLocation(Location location, Part part) throws Exception;
     
     /**
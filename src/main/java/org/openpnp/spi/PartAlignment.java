@@ -1,5 +1,8 @@
 package org.openpnp.spi;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Location;
@@ -40,6 +43,46 @@ public interface PartAlignment extends Identifiable, Named, PropertySheetHolder
         }
     }
 
+    /**
+     * The arguments of one findOffsets() call, for aligning several parts at once.
+     */
+    public class PartAlignmentRequest
+    {
+        private final Part part;
+        private final BoardLocation boardLocation;
+        private final Location placementLocation;
+        private final Nozzle nozzle;
+
+        public PartAlignmentRequest(Part part, BoardLocation boardLocation,
+                Location placementLocation, Nozzle nozzle)
+        {
+            this.part = part;
+            this.boardLocation = boardLocation;
+            this.placementLocation = placementLocation;
+            this.nozzle = nozzle;
+        }
+
+        public Part getPart()
+        {
+            return part;
+        }
+
+        public BoardLocation getBoardLocation()
+        {
+            return boardLocation;
+        }
+
+        public Location getPlacementLocation()
+        {
+            return placementLocation;
+        }
+
+        public Nozzle getNozzle()
+        {
+            return nozzle;
+        }
+    }
+
     /**
      * Perform the part alignment operation. The method must return a Location containing
      * the offsets on the nozzle of the aligned part and these offsets will be applied
@@ -52,6 +95,33 @@ public interface PartAlignment extends Identifiable, Named, PropertySheetHolder
      * @throws Exception if the alignment fails for any reason. The caller may retry.
      */
     PartAlignmentOffset findOffsets(Part part, BoardLocation boardLocation, Location placementLocation, Nozzle nozzle) throws Exception;
+
+    /**
+     * Returns true if this PartAlignment can align the parts in the requests together, with
+     * findOffsets(List), in less time than one at a time. The default is false.
+     * @param requests One request per nozzle.
+     * @return
+     */
+    default boolean canAlignTogether(List<PartAlignmentRequest> requests) {
+        return false;
+    }
+
+    /**
+     * Align the parts on several nozzles. Implementations that can see more than one nozzle at
+     * a time can override this to align them all with a single move and capture. The default
+     * implementation calls findOffsets() for each request in turn.
+     * @param requests One request per nozzle.
+     * @return The offsets for each request, in the same order as the requests.
+     * @throws Exception if any of the alignments fail.
+     */
+    default List<PartAlignmentOffset> findOffsets(List<PartAlignmentRequest> requests) throws Exception {
+        List<PartAlignmentOffset> offsets = new ArrayList<>();
+        for (PartAlignmentRequest request : requests) {
+            offsets.add(findOffsets(request.getPart(), request.getBoardLocation(),
+                    request.getPlacementLocation(), request.getNozzle()));
+        }
+        return offsets;
+    }
     
     /**
      * Get a Wizard for configuring the PartAlignment instance properties for a specific
@@ -10,6 +10,11 @@ import java.util.Set;
 
 import javax.swing.Icon;
 
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
 import org.openpnp.CameraListener;
 import org.openpnp.ConfigurationListener;
 import org.openpnp.gui.support.Icons;
@@ -20,6 +25,7 @@ import org.openpnp.model.Location;
 import org.openpnp.spi.Camera;
 import org.openpnp.spi.Head;
 import org.openpnp.spi.VisionProvider;
+import org.openpnp.util.OpenCvUtils;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -43,6 +49,30 @@ public abstract class AbstractCamera extends AbstractModelObject implements Came
     @Attribute(required = false)
     protected long settleTimeMs = 250;
 
+    /**
+     * If true, settling compares successive frames and ends as soon as they stop changing, with
+     * settleTimeMs as the upper bound.
+     */
+    @Attribute(required = false)
+    protected boolean settleAdaptive = false;
+
+    /**
+     * The mean absolute difference, in gray levels of the center of the image, below which two
+     * successive frames are considered the same.
+     */
+    @Attribute(required = false)
+    protected double settleThreshold = 1.5;
+
+    /**
+     * The number of successive frame pairs that must be the same before the camera is
+     * considered settled. A single pair can match by chance while the head is still ringing,
+     * for instance at the turning point of a vibration.
+     */
+    @Attribute(required = false)
+    protected int settleStableFrames = 3;
+
+    protected SettleStatistics settleStatistics = new SettleStatistics();
+
     protected Set<ListenerEntry> listeners = Collections.synchronizedSet(new HashSet<>());
 
     protected Head head;
@@ -139,24 +169,122 @@ public abstract class AbstractCamera extends AbstractModelObject implements Came
     }
 
     public BufferedImage settleAndCapture() {
+        settle();
+        return capture();
+    }
 
+    public Mat captureMat() {
+        return OpenCvUtils.toMat(capture());
+    }
+
+    public Mat settleAndCaptureMat() {
+        settle();
+        return captureMat();
+    }
+
+    /**
+     * Fires the Camera.BeforeSettle scripting event and then waits the settle time.
+     */
+    protected void settle() {
+        fireBeforeSettle();
+        if (settleAdaptive) {
+            settleAdaptive();
+            return;
+        }
         try {
-            Map<String, Object> globals = new HashMap<>();
-            globals.put("camera", this);
-            Configuration.get().getScripting().on("Camera.BeforeSettle", globals);
+            Thread.sleep(getSettleTimeMs());
         }
         catch (Exception e) {
-            Logger.warn(e);
+
+        }
+    }
+
+    /**
+     * Captures frames until settleStableFrames pairs in a row differ by less than
+     * settleThreshold or settleTimeMs has passed. Only the gray center of each frame is
+     * compared, see toSettleFrame().
+     */
+    protected void settleAdaptive() {
+        long t = System.currentTimeMillis();
+        long deadline = t + getSettleTimeMs();
+        int stableFramesRequired = Math.max(1, settleStableFrames);
+        int stableFrames = 0;
+        Mat previous = captureSettleFrame();
+        while (stableFrames < stableFramesRequired && System.currentTimeMillis() < deadline) {
+            Mat frame = captureSettleFrame();
+            if (meanAbsoluteDifference(previous, frame) <= settleThreshold) {
+                stableFrames++;
+            }
+            else {
+                stableFrames = 0;
+            }
+            previous.release();
+            previous = frame;
         }
-        
-    	
+        previous.release();
+        boolean settled = stableFrames >= stableFramesRequired;
+        long settleMs = System.currentTimeMillis() - t;
+        settleStatistics.add(settleMs, settled);
+        Logger.debug("{} settled {} in {} ms. {}", this, settled ? "adaptively" : "by timeout",
+                settleMs, settleStatistics);
+    }
+
+    /**
+     * Captures a gray, downsampled frame for settleAdaptive().
+     */
+    protected Mat captureSettleFrame() {
+        return toSettleFrame(captureMat());
+    }
+
+    /**
+     * Takes the center half of the Mat, in each direction, as gray for comparison by
+     * settleAdaptive(). Releases the Mat. The center is where vision looks, and keeping it at
+     * full resolution means a vibration of a pixel or two still shows up. Large centers are
+     * halved, which averages out some sensor noise but still resolves two pixels of motion.
+     */
+    protected static Mat toSettleFrame(Mat mat) {
+        Mat center = new Mat(mat, new Rect(mat.cols() / 4, mat.rows() / 4,
+                Math.max(1, mat.cols() / 2), Math.max(1, mat.rows() / 2)));
+        Mat gray = new Mat();
+        if (center.channels() > 1) {
+            Imgproc.cvtColor(center, gray,
+                    center.channels() == 4 ? Imgproc.COLOR_BGRA2GRAY : Imgproc.COLOR_BGR2GRAY);
+        }
+        else {
+            center.copyTo(gray);
+        }
+        center.release();
+        mat.release();
+        if (gray.cols() < 640) {
+            return gray;
+        }
+        Mat small = new Mat();
+        Imgproc.resize(gray, small, new Size(gray.cols() / 2, gray.rows() / 2), 0, 0,
+                Imgproc.INTER_AREA);
+        gray.release();
+        return small;
+    }
+
+    private static double meanAbsoluteDifference(Mat a, Mat b) {
+        if (a.size().width != b.size().width || a.size().height != b.size().height) {
+            return Double.MAX_VALUE;
+        }
+        Mat diff = new Mat();
+        Core.absdiff(a, b, diff);
+        double mean = Core.mean(diff).val[0];
+        diff.release();
+        return mean;
+    }
+
+    protected void fireBeforeSettle() {
         try {
-            Thread.sleep(getSettleTimeMs());
+            Map<String, Object> globals = new HashMap<>();
+            globals.put("camera", this);
+            Configuration.get().getScripting().on("Camera.BeforeSettle", globals);
         }
         catch (Exception e) {
-
+            Logger.warn(e);
         }
-        return capture();
     }
 
     protected void broadcastCapture(BufferedImage img) {
@@ -177,6 +305,34 @@ public abstract class AbstractCamera extends AbstractModelObject implements Came
         this.settleTimeMs = settleTimeMs;
     }
 
+    public boolean isSettleAdaptive() {
+        return settleAdaptive;
+    }
+
+    public void setSettleAdaptive(boolean settleAdaptive) {
+        this.settleAdaptive = settleAdaptive;
+    }
+
+    public double getSettleThreshold() {
+        return settleThreshold;
+    }
+
+    public void setSettleThreshold(double settleThreshold) {
+        this.settleThreshold = settleThreshold;
+    }
+
+    public int getSettleStableFrames() {
+        return settleStableFrames;
+    }
+
+    public void setSettleStableFrames(int settleStableFrames) {
+        this.settleStableFrames = settleStableFrames;
+    }
+
+    public SettleStatistics getSettleStatistics() {
+        return settleStatistics;
+    }
+
     @Override
     public Icon getPropertySheetHolderIcon() {
         return Icons.captureCamera;
@@ -197,6 +353,52 @@ public abstract class AbstractCamera extends AbstractModelObject implements Came
         return getName();
     }
     
+    /**
+     * Running statistics of adaptive settles, used to tune settleTimeMs and settleThreshold. A
+     * high timeout count means the bound is too short or the threshold too strict.
+     */
+    public static class SettleStatistics {
+        private long count;
+        private long timeouts;
+        private long totalMs;
+        private long maxMs;
+
+        public synchronized void add(long settleMs, boolean settled) {
+            count++;
+            if (!settled) {
+                timeouts++;
+            }
+            totalMs += settleMs;
+            maxMs = Math.max(maxMs, settleMs);
+        }
+
+        public synchronized void reset() {
+            count = timeouts = totalMs = maxMs = 0;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getTimeouts() {
+            return timeouts;
+        }
+
+        public synchronized double getAverageMs() {
+            return count == 0 ? 0 : (double) totalMs / count;
+        }
+
+        public synchronized long getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("Settles %d, timeouts %d, average %.0f ms, max %d ms", count,
+                    timeouts, getAverageMs(), maxMs);
+        }
+    }
+
     protected class ListenerEntry {
         public CameraListener listener;
         public int maximumFps;
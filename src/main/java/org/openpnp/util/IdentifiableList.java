@@ -1,36 +1,111 @@
 package org.openpnp.util;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.openpnp.model.Identifiable;
 
 /**
  * A List specifically for storing implementations of Identifiable. This class adds a get(String)
- * method for getting the Identifiable object with the specified id from the list. Currently
- * performs a simple search through the list but is intended to be indexed eventually.
- * 
- * TODO: Perform indexing on insert and remove so that get(String) can perform better. Consider what
- * happens if an id changes out from under us.
- * 
+ * method for getting the Identifiable object with the specified id from the list.
+ *
+ * Lookups go through an index from id to element. add(E) keeps the index up to date, any other
+ * structural change to the list causes it to be rebuilt on the next lookup. An element's id can
+ * change while it is in the list without the list knowing, so a lookup that finds an element
+ * under an id it no longer has, or finds nothing, checks the list itself. Lookups of ids that are
+ * in the list are constant time, a lookup of an id that isn't costs a scan, like it did before
+ * the index. It is still a plain List to everything else, so it serializes the same as before.
+ *
  * @param <E>
  */
 public class IdentifiableList<E extends Identifiable> extends ArrayList<E> {
     private static final long serialVersionUID = -2350184908321182804L;
-    
+
+    private transient Map<String, E> index;
+    private transient int indexModCount;
+
+    /**
+     * For each prefix the number below which all ids given out by createId() are in the list.
+     * Dropped whenever the index is rebuilt, since elements may have been removed.
+     */
+    private transient Map<String, Integer> nextIds;
+
+    /**
+     * Returns the lowest numbered id with the given prefix that is not in the list. Searching
+     * starts where the previous call for the same prefix stopped, so creating ids for a series of
+     * added elements doesn't probe every lower id again each time.
+     *
+     * Only the index is probed, so that each probe is constant time. An id that an element was
+     * given after it was added, without any other change to the list since, is not seen.
+     */
     public String createId(String prefix) {
-        for (int i = 0; ; i++) {
-            if (get(prefix + i) == null) {
-                return prefix + i;
-            }
+        Map<String, E> index = getIndex();
+        if (nextIds == null) {
+            nextIds = new HashMap<>();
+        }
+        int i = nextIds.getOrDefault(prefix, 0);
+        while (index.containsKey(prefix + i)) {
+            i++;
         }
+        nextIds.put(prefix, i);
+        return prefix + i;
     }
 
     public E get(String id) {
-        for (E e : this) {
-            if (e.getId().equals(id)) {
-                return e;
+        if (id == null) {
+            return null;
+        }
+        E e = getIndex().get(id);
+        if (e != null && id.equals(e.getId())) {
+            return e;
+        }
+        // Either the indexed element's id changed, or an element was given this id after it
+        // was indexed. Find it the slow way and rebuild the index if the ids have moved.
+        for (E candidate : this) {
+            if (id.equals(candidate.getId())) {
+                index = null;
+                return candidate;
             }
         }
+        if (e != null) {
+            index = null;
+        }
         return null;
     }
+
+    @Override
+    public boolean add(E e) {
+        boolean indexed = isIndexCurrent();
+        super.add(e);
+        if (indexed) {
+            index.putIfAbsent(e.getId(), e);
+            indexModCount = modCount;
+        }
+        return true;
+    }
+
+    @Override
+    public E set(int i, E e) {
+        E old = super.set(i, e);
+        index = null;
+        return old;
+    }
+
+    private boolean isIndexCurrent() {
+        return index != null && indexModCount == modCount;
+    }
+
+    private Map<String, E> getIndex() {
+        if (!isIndexCurrent()) {
+            // putIfAbsent so that duplicate ids resolve to the first one, as a search would.
+            index = new HashMap<>();
+            for (E e : this) {
+                index.putIfAbsent(e.getId(), e);
+            }
+            indexModCount = modCount;
+            nextIds = null;
+        }
+        return index;
+    }
 }
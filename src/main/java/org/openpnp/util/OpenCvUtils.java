@@ -250,6 +250,11 @@ public class OpenCvUtils {
      * Ported from the C++ version in FireSight by Karl Lew, which is licensed under the 
      * MIT license.
      * https://github.com/firepick1/FireSight
+     * 
+     * The first channel of the Mat is copied once into an array and scanned there, rather than
+     * reading each value from the Mat. The array type holds the values exactly, so the result is
+     * the same as reading them one by one with Mat.get(). The result of Imgproc.matchTemplate is
+     * CV_32FC1 and is copied into a float array without conversion.
      * @param mat
      * @param rangeMin
      * @param rangeMax
@@ -258,15 +263,20 @@ public class OpenCvUtils {
     public static List<java.awt.Point> matMaxima(Mat mat, double rangeMin, double rangeMax) {
         List<java.awt.Point> locations = new ArrayList<>();
 
-        int rEnd = mat.rows() - 1;
-        int cEnd = mat.cols() - 1;
+        int rows = mat.rows();
+        int cols = mat.cols();
+        ChannelData data = toChannelData(mat);
+
+        int rEnd = rows - 1;
+        int cEnd = cols - 1;
 
         // CHECK EACH ROW MAXIMA FOR LOCAL 2D MAXIMA
         for (int r = 0; r <= rEnd; r++) {
+            int row = r * cols;
             MinMaxState state = MinMaxState.BEFORE_INFLECTION;
-            double curVal = mat.get(r, 0)[0];
+            double curVal = data.get(row);
             for (int c = 1; c <= cEnd; c++) {
-                double val = mat.get(r, c)[0];
+                double val = data.get(row + c);
 
                 if (val == curVal) {
                     continue;
@@ -283,25 +293,25 @@ public class OpenCvUtils {
                     if (state == MinMaxState.BEFORE_INFLECTION) {
                         if (rangeMin <= curVal && curVal <= rangeMax) { // ROW
                                                                         // MAXIMA
-                            if (0 < r && (mat.get(r - 1, c - 1)[0] >= curVal
-                                    || mat.get(r - 1, c)[0] >= curVal)) {
+                            if (0 < r && (get(data, cols, r - 1, c - 1) >= curVal
+                                    || get(data, cols, r - 1, c) >= curVal)) {
                                 // cout << "reject:r-1 " << r << "," << c-1 <<
                                 // endl;
                                 // - x x
                                 // - - -
                                 // - - -
                             }
-                            else if (r < rEnd && (mat.get(r + 1, c - 1)[0] > curVal
-                                    || mat.get(r + 1, c)[0] > curVal)) {
+                            else if (r < rEnd && (get(data, cols, r + 1, c - 1) > curVal
+                                    || get(data, cols, r + 1, c) > curVal)) {
                                 // cout << "reject:r+1 " << r << "," << c-1 <<
                                 // endl;
                                 // - - -
                                 // - - -
                                 // - x x
                             }
-                            else if (1 < c && (0 < r && mat.get(r - 1, c - 2)[0] >= curVal
-                                    || mat.get(r, c - 2)[0] > curVal
-                                    || r < rEnd && mat.get(r + 1, c - 2)[0] > curVal)) {
+                            else if (1 < c && (0 < r && get(data, cols, r - 1, c - 2) >= curVal
+                                    || get(data, cols, r, c - 2) > curVal
+                                    || r < rEnd && get(data, cols, r + 1, c - 2) > curVal)) {
                                 // cout << "reject:c-2 " << r << "," << c-1 <<
                                 // endl;
                                 // x - -
@@ -325,25 +335,25 @@ public class OpenCvUtils {
             // PROCESS END OF ROW
             if (state == MinMaxState.BEFORE_INFLECTION) {
                 if (rangeMin <= curVal && curVal <= rangeMax) { // ROW MAXIMA
-                    if (0 < r && (mat.get(r - 1, cEnd - 1)[0] >= curVal
-                            || mat.get(r - 1, cEnd)[0] >= curVal)) {
+                    if (0 < r && (get(data, cols, r - 1, cEnd - 1) >= curVal
+                            || get(data, cols, r - 1, cEnd) >= curVal)) {
                         // cout << "rejectEnd:r-1 " << r << "," << cEnd-1 <<
                         // endl;
                         // - x x
                         // - - -
                         // - - -
                     }
-                    else if (r < rEnd && (mat.get(r + 1, cEnd - 1)[0] > curVal
-                            || mat.get(r + 1, cEnd)[0] > curVal)) {
+                    else if (r < rEnd && (get(data, cols, r + 1, cEnd - 1) > curVal
+                            || get(data, cols, r + 1, cEnd) > curVal)) {
                         // cout << "rejectEnd:r+1 " << r << "," << cEnd-1 <<
                         // endl;
                         // - - -
                         // - - -
                         // - x x
                     }
-                    else if (1 < r && mat.get(r - 1, cEnd - 2)[0] >= curVal
-                            || mat.get(r, cEnd - 2)[0] > curVal
-                            || r < rEnd && mat.get(r + 1, cEnd - 2)[0] > curVal) {
+                    else if (1 < r && get(data, cols, r - 1, cEnd - 2) >= curVal
+                            || get(data, cols, r, cEnd - 2) > curVal
+                            || r < rEnd && get(data, cols, r + 1, cEnd - 2) > curVal) {
                         // cout << "rejectEnd:cEnd-2 " << r << "," << cEnd-1 <<
                         // endl;
                         // x - -
@@ -358,5 +368,70 @@ public class OpenCvUtils {
         }
 
         return locations;
-    }    
+    }
+
+    /**
+     * Returns the value at r, c of a single channel image stored row by row in data. Like
+     * Mat.get(), columns outside the row are an error rather than a read into the next row.
+     */
+    private static double get(ChannelData data, int cols, int r, int c) {
+        if (c < 0 || c >= cols) {
+            throw new IndexOutOfBoundsException("Column " + c + " is outside 0.." + (cols - 1));
+        }
+        return data.get(r * cols + c);
+    }
+
+    /**
+     * The first channel of a Mat, stored row by row in an array of the narrowest Java type that
+     * holds its values exactly.
+     */
+    private interface ChannelData {
+        double get(int index);
+    }
+
+    /**
+     * Copies the first channel of the Mat into an array. CV_32S and CV_64F are copied into int and
+     * double arrays, since float can't hold all of their values exactly. Every other depth is
+     * copied into a float array, converting it first unless it is already CV_32F.
+     */
+    private static ChannelData toChannelData(Mat mat) {
+        Mat channel = mat;
+        if (mat.channels() > 1) {
+            channel = new Mat();
+            Core.extractChannel(mat, channel, 0);
+        }
+        int depth = channel.depth();
+        if (depth != CvType.CV_32S && depth != CvType.CV_64F && depth != CvType.CV_32F) {
+            Mat converted = new Mat();
+            channel.convertTo(converted, CvType.CV_32F);
+            if (channel != mat) {
+                channel.release();
+            }
+            channel = converted;
+            depth = CvType.CV_32F;
+        }
+        else if (!channel.isContinuous()) {
+            channel = channel.clone();
+        }
+        ChannelData data;
+        if (depth == CvType.CV_32S) {
+            int[] values = new int[(int) channel.total()];
+            channel.get(0, 0, values);
+            data = index -> values[index];
+        }
+        else if (depth == CvType.CV_64F) {
+            double[] values = new double[(int) channel.total()];
+            channel.get(0, 0, values);
+            data = index -> values[index];
+        }
+        else {
+            float[] values = new float[(int) channel.total()];
+            channel.get(0, 0, values);
+            data = index -> values[index];
+        }
+        if (channel != mat) {
+            channel.release();
+        }
+        return data;
+    }
 }
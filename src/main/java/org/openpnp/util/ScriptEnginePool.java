@@ -0,0 +1,137 @@
+package org.openpnp.util;
+
+import java.io.File;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.io.Files;
+
+import bsh.engine.BshScriptEngineFactory;
+
+/**
+ * Runs script files, keeping the engine each script was loaded into for the next run rather than
+ * creating a new engine and reading the file every time. When the engine is Compilable the script
+ * is compiled once per engine. A script that is run by several threads at once gets an engine per
+ * thread, and all of them are kept. Engines are dropped when the script file's modification time
+ * changes.
+ *
+ * Each run uses the engine's own bindings, since creating new ones is about as expensive as
+ * creating the engine for some engines, such as Nashorn. Every binding the run added, both the
+ * globals passed to it and the variables the script defined itself, is removed again when it
+ * finishes, so each run starts from fresh bindings and an idle engine keeps nothing alive.
+ */
+public class ScriptEnginePool {
+    private final ScriptEngineManager manager;
+
+    private final Map<File, Deque<PreparedScript>> idle = new ConcurrentHashMap<>();
+
+    public ScriptEnginePool(ScriptEngineManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Creates a ScriptEngineManager with the BeanShell engine registered for the .bsh and .java
+     * extensions.
+     */
+    public static ScriptEngineManager createScriptEngineManager() {
+        ScriptEngineManager manager = new ScriptEngineManager();
+        // Hack to fix BSH on Windows. See https://github.com/openpnp/openpnp/issues/462
+        manager.registerEngineExtension("bsh", new BshScriptEngineFactory());
+        manager.registerEngineExtension("java", new BshScriptEngineFactory());
+        return manager;
+    }
+
+    /**
+     * Run the script with the given globals.
+     *
+     * @return The value of the last statement the script evaluated, if the engine provides it.
+     * @throws Exception
+     */
+    public Object eval(File script, Map<String, Object> globals) throws Exception {
+        PreparedScript prepared = prepare(script);
+        try {
+            Bindings bindings = prepared.engine.getBindings(ScriptContext.ENGINE_SCOPE);
+            Set<String> keys = new HashSet<>(bindings.keySet());
+            if (globals != null) {
+                bindings.putAll(globals);
+            }
+            try {
+                if (prepared.compiled != null) {
+                    return prepared.compiled.eval();
+                }
+                return prepared.engine.eval(prepared.source);
+            }
+            finally {
+                for (String key : new HashSet<>(bindings.keySet())) {
+                    if (!keys.contains(key)) {
+                        bindings.remove(key);
+                    }
+                }
+                bindings.put(ScriptEngine.FILENAME, script.getPath());
+            }
+        }
+        finally {
+            idle.computeIfAbsent(script, k -> new ConcurrentLinkedDeque<>()).offerFirst(prepared);
+        }
+    }
+
+    /**
+     * Drops the engines of scripts whose files no longer exist.
+     */
+    public void removeMissing() {
+        idle.keySet().removeIf(file -> !file.exists());
+    }
+
+    private PreparedScript prepare(File script) throws Exception {
+        long lastModified = script.lastModified();
+        Deque<PreparedScript> scripts = idle.get(script);
+        if (scripts != null) {
+            PreparedScript prepared;
+            while ((prepared = scripts.pollFirst()) != null) {
+                if (prepared.lastModified == lastModified) {
+                    return prepared;
+                }
+            }
+        }
+        ScriptEngine engine =
+                manager.getEngineByExtension(Files.getFileExtension(script.getName()));
+        if (engine == null) {
+            throw new Exception("Unable to find scripting engine for " + script);
+        }
+        engine.put(ScriptEngine.FILENAME, script.getPath());
+        String source = FileUtils.readFileToString(script);
+        CompiledScript compiled = null;
+        if (engine instanceof Compilable) {
+            compiled = ((Compilable) engine).compile(source);
+        }
+        return new PreparedScript(engine, compiled, source, lastModified);
+    }
+
+    private static class PreparedScript {
+        final ScriptEngine engine;
+        final CompiledScript compiled;
+        final String source;
+        final long lastModified;
+
+        PreparedScript(ScriptEngine engine, CompiledScript compiled, String source,
+                long lastModified) {
+            this.engine = engine;
+            this.compiled = compiled;
+            this.source = source;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.openpnp.util;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Orders a set of nodes so that the total travel between them is short. A nearest neighbour tour
+ * is built first and then improved with 2-opt. The path is open: it starts at a fixed anchor,
+ * described by the distance from the anchor to each node, and ends at whichever node is last.
+ *
+ * Nodes are referred to by index, 0 to count - 1. The metric must be symmetric.
+ */
+public class TravelOptimizer {
+    public interface Metric {
+        double distance(int a, int b);
+    }
+
+    /**
+     * Find a short path through all the nodes.
+     *
+     * @param count The number of nodes.
+     * @param startDistance The distance from the anchor to each node.
+     * @param metric The distance between two nodes.
+     * @param maxPasses The maximum number of 2-opt passes to perform. Each pass is O(n^2).
+     * @return The node indexes in travel order.
+     */
+    public static int[] optimize(int count, IntToDoubleFunction startDistance, Metric metric,
+            int maxPasses) {
+        int[] path = nearestNeighbour(count, startDistance, metric);
+        for (int pass = 0; pass < maxPasses; pass++) {
+            if (!twoOpt(path, startDistance, metric)) {
+                break;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Returns the length of the given path, including the leg from the anchor to the first node.
+     */
+    public static double pathLength(int[] path, IntToDoubleFunction startDistance,
+            Metric metric) {
+        if (path.length == 0) {
+            return 0;
+        }
+        double length = startDistance.applyAsDouble(path[0]);
+        for (int i = 1; i < path.length; i++) {
+            length += metric.distance(path[i - 1], path[i]);
+        }
+        return length;
+    }
+
+    static int[] nearestNeighbour(int count, IntToDoubleFunction startDistance, Metric metric) {
+        int[] path = new int[count];
+        boolean[] visited = new boolean[count];
+        int last = -1;
+        for (int i = 0; i < count; i++) {
+            int nearest = -1;
+            double nearestDistance = Double.MAX_VALUE;
+            for (int node = 0; node < count; node++) {
+                if (visited[node]) {
+                    continue;
+                }
+                double distance = last == -1 ? startDistance.applyAsDouble(node)
+                        : metric.distance(last, node);
+                if (distance < nearestDistance) {
+                    nearest = node;
+                    nearestDistance = distance;
+                }
+            }
+            visited[nearest] = true;
+            path[i] = nearest;
+            last = nearest;
+        }
+        return path;
+    }
+
+    /**
+     * Performs a single 2-opt pass over the path, reversing any segment that makes the path
+     * shorter.
+     *
+     * @return true if the path was changed.
+     */
+    static boolean twoOpt(int[] path, IntToDoubleFunction startDistance, Metric metric) {
+        int n = path.length;
+        boolean improved = false;
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double before = (i == 0 ? startDistance.applyAsDouble(path[i])
+                        : metric.distance(path[i - 1], path[i]))
+                        + (j == n - 1 ? 0 : metric.distance(path[j], path[j + 1]));
+                double after = (i == 0 ? startDistance.applyAsDouble(path[j])
+                        : metric.distance(path[i - 1], path[j]))
+                        + (j == n - 1 ? 0 : metric.distance(path[i], path[j + 1]));
+                if (after < before - 1e-9) {
+                    reverse(path, i, j);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    private static void reverse(int[] path, int from, int to) {
+        while (from < to) {
+            int t = path[from];
+            path[from] = path[to];
+            path[to] = t;
+            from++;
+            to--;
+        }
+    }
+}
@@ -139,6 +139,40 @@ public class VisionUtils {
         }
     }
     
+    /**
+     * Same as findPartAlignmentOffsets(PartAlignment, Part, BoardLocation, Location, Nozzle) for
+     * several nozzles at once, firing the scripting events for each part.
+     */
+    public static List<PartAlignment.PartAlignmentOffset> findPartAlignmentOffsets(PartAlignment p, List<PartAlignment.PartAlignmentRequest> requests) throws Exception {
+        for (PartAlignment.PartAlignmentRequest request : requests) {
+            try {
+                Map<String, Object> globals = new HashMap<>();
+                globals.put("part", request.getPart());
+                globals.put("nozzle", request.getNozzle());
+                Configuration.get().getScripting().on("Vision.PartAlignment.Before", globals);
+            }
+            catch (Exception e) {
+                Logger.warn(e);
+            }
+        }
+        try {
+            return p.findOffsets(requests);
+        }
+        finally {
+            for (PartAlignment.PartAlignmentRequest request : requests) {
+                try {
+                    Map<String, Object> globals = new HashMap<>();
+                    globals.put("part", request.getPart());
+                    globals.put("nozzle", request.getNozzle());
+                    Configuration.get().getScripting().on("Vision.PartAlignment.After", globals);
+                }
+                catch (Exception e) {
+                    Logger.warn(e);
+                }
+            }
+        }
+    }
+
     public static PartAlignment.PartAlignmentOffset findPartAlignmentOffsets(PartAlignment p, Part part, BoardLocation boardLocation, Location placementLocation, Nozzle nozzle) throws Exception {
         try {
             Map<String, Object> globals = new HashMap<>();
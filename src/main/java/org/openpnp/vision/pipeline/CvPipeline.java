@@ -1,20 +1,33 @@
 package org.openpnp.vision.pipeline;
 
+import java.awt.Color;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
+import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.ScriptRun;
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.Root;
 import org.simpleframework.xml.Serializer;
@@ -50,6 +63,19 @@ public class CvPipeline implements AutoCloseable {
         System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
     }
 
+    /**
+     * Pipelines recently parsed by fromXmlString, keyed by their XML. Stages are copied out of
+     * these rather than parsing the same XML again, which is the common case for default
+     * pipelines.
+     */
+    private static final Map<String, CvPipeline> parsedPipelines =
+            Collections.synchronizedMap(new LinkedHashMap<String, CvPipeline>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CvPipeline> eldest) {
+                    return size() > 16;
+                }
+            });
+
     @ElementList
     private ArrayList<CvStage> stages = new ArrayList<>();
 
@@ -190,9 +216,27 @@ public class CvPipeline implements AutoCloseable {
       this.totalProcessingTimeNs = totalProcessingTimeNs;
     }
 
+    /**
+     * Process the pipeline, keeping result images only for the stages that are referenced by name,
+     * either by another stage or by the callers that read the pipeline's results. This is the
+     * mode used for machine operations, where the intermediate images are never looked at.
+     */
     public void process() {
+        process(false);
+    }
+
+    /**
+     * Process the pipeline.
+     * 
+     * @param retainAllImages If true, a copy of the working image is kept as the result image of
+     *        every stage, so that any of them can be displayed afterwards. This is what the
+     *        pipeline editor uses. If false, only the images of referenced stages are kept and
+     *        the results of all other stages only hold their model.
+     */
+    public void process(boolean retainAllImages) {
         totalProcessingTimeNs = 0;
         release();
+        Set<String> retainedNames = retainAllImages ? null : getReferencedStageNames();
         for (CvStage stage : stages) {
             // Process and time the stage and get the result.
             long processingTimeNs = System.nanoTime();
@@ -218,10 +262,12 @@ public class CvPipeline implements AutoCloseable {
             if(stage.isEnabled() && model != null) {
               workingModel=model;
             }
+            boolean retainImage =
+                    retainedNames == null || retainedNames.contains(stage.getName());
             // If the result image is null and there is a working image,
             // replace the result image with a clone of the working image.
             if (image == null) {
-                if (workingImage != null) {
+                if (workingImage != null && retainImage) {
                     image = workingImage.clone();
                 }
             }
@@ -234,13 +280,47 @@ public class CvPipeline implements AutoCloseable {
                     workingImage.release();
                 }
                 workingImage = image;
-                image = image.clone();
+                image = retainImage ? image.clone() : null;
             }
 
             results.put(stage, new Result(image, model, processingTimeNs));
         }
     }
 
+    /**
+     * Returns the names of the stages whose result images may be read during or after processing:
+     * the result stages that callers look up by name, and every stage named by a String
+     * property of another stage, such as ImageRecall's imageStageName. Returns null if all images
+     * must be kept, which is the case when the pipeline runs scripts, since those can read any
+     * result.
+     */
+    private Set<String> getReferencedStageNames() {
+        Set<String> names = new HashSet<>(Arrays.asList(VisionUtils.PIPELINE_RESULTS_NAME, "result"));
+        for (CvStage stage : stages) {
+            if (stage instanceof ScriptRun) {
+                return null;
+            }
+            for (Class<?> cls = stage.getClass(); cls != CvStage.class; cls = cls.getSuperclass()) {
+                for (Field field : cls.getDeclaredFields()) {
+                    if (field.getType() != String.class || Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        Object value = field.get(stage);
+                        if (value != null) {
+                            names.add((String) value);
+                        }
+                    }
+                    catch (Exception e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
     /**
      * Release any temporary resources associated with the processing of the pipeline. Should be
      * called when the pipeline is no longer needed. This is primarily to release retained native
@@ -278,9 +358,8 @@ public class CvPipeline implements AutoCloseable {
      * @throws Exception
      */
     public String toXmlString() throws Exception {
-        Serializer ser = createSerializer();
         StringWriter sw = new StringWriter();
-        ser.write(this, sw);
+        serializer.write(this, sw);
         return sw.toString();
     }
 
@@ -292,12 +371,15 @@ public class CvPipeline implements AutoCloseable {
      */
     public void fromXmlString(String s) throws Exception {
         release();
-        Serializer ser = createSerializer();
-        StringReader sr = new StringReader(s);
-        CvPipeline pipeline = ser.read(CvPipeline.class, sr);
+        CvPipeline pipeline = parsedPipelines.get(s);
+        if (pipeline == null) {
+            StringReader sr = new StringReader(s);
+            pipeline = serializer.read(CvPipeline.class, sr);
+            parsedPipelines.put(s, pipeline);
+        }
         stages.clear();
         for (CvStage stage : pipeline.getStages()) {
-            add(stage);
+            add(copyStage(stage));
         }
     }
 
@@ -310,15 +392,75 @@ public class CvPipeline implements AutoCloseable {
         }
     }
 
+    /**
+     * Returns a deep copy of the pipeline's stages. The copy is made field by field rather than by
+     * writing and parsing XML, so it is cheap enough to do for every part. Properties and results
+     * are not copied.
+     */
     @Override
     public CvPipeline clone() throws CloneNotSupportedException {
         try {
-            return new CvPipeline(toXmlString());
+            CvPipeline pipeline = new CvPipeline();
+            for (CvStage stage : stages) {
+                pipeline.add(copyStage(stage));
+            }
+            return pipeline;
         }
         catch (Exception e) {
             throw new CloneNotSupportedException(e.getMessage());
         }
     }
+
+    /**
+     * Creates a new instance of the stage's class and copies the serialized fields into it. The
+     * serialized fields of stages are primitives, Strings, enums, Colors and Files, all of which
+     * are immutable and can be shared. A stage with any other kind of serialized field is copied
+     * through XML instead.
+     */
+    private static CvStage copyStage(CvStage stage) throws Exception {
+        CvStage copy = stage.getClass().getDeclaredConstructor().newInstance();
+        for (Class<?> cls = stage.getClass(); cls != Object.class; cls = cls.getSuperclass()) {
+            for (Field field : cls.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                if (!isSerialized(field)) {
+                    continue;
+                }
+                if ((field.getAnnotation(Attribute.class) == null
+                        && field.getAnnotation(Element.class) == null)
+                        || !isImmutable(field.getType())) {
+                    return copyStageXml(stage);
+                }
+                field.setAccessible(true);
+                field.set(copy, field.get(stage));
+            }
+        }
+        return copy;
+    }
+
+    private static CvStage copyStageXml(CvStage stage) throws Exception {
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.stages.add(stage);
+        StringWriter sw = new StringWriter();
+        serializer.write(pipeline, sw);
+        return serializer.read(CvPipeline.class, new StringReader(sw.toString())).stages.get(0);
+    }
+
+    private static boolean isSerialized(Field field) {
+        for (Annotation annotation : field.getAnnotations()) {
+            if (annotation.annotationType().getPackage() == Element.class.getPackage()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isImmutable(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || type == String.class
+                || type == Color.class || type == File.class || type == Boolean.class
+                || type == Integer.class || type == Long.class || type == Double.class;
+    }
     
     public Object getProperty(String name) {
         return properties.get(name);
@@ -328,11 +470,16 @@ public class CvPipeline implements AutoCloseable {
         properties.put(name, value);
     }
     
+    /**
+     * Shared since pipelines are converted to and from XML often, and the Persister caches what
+     * it learns about each stage class.
+     */
+    private static final Serializer serializer = createSerializer();
+
     private static Serializer createSerializer() {
         Style style = new HyphenStyle();
         Format format = new Format(style);
         AnnotationStrategy strategy = new AnnotationStrategy();
-        Serializer serializer = new Persister(strategy, format);
-        return serializer;
+        return new Persister(strategy, format);
     }
 }
@@ -1,9 +1,7 @@
 package org.openpnp.vision.pipeline.stages;
 
-import java.awt.image.BufferedImage;
-
+import org.opencv.core.Mat;
 import org.openpnp.spi.Camera;
-import org.openpnp.util.OpenCvUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.simpleframework.xml.Attribute;
@@ -15,6 +13,13 @@ import org.openpnp.vision.pipeline.Property;
   description="Capture an image from the pipeline camera.")
 
 public class ImageCapture extends CvStage {
+    /**
+     * If the pipeline has a Mat set in this property, the stage returns a copy of it instead of
+     * capturing from the camera. Used to run pipelines on parts of an image captured once for
+     * several of them.
+     */
+    public static final String IMAGE_PROPERTY = "ImageCapture.image";
+
     @Attribute
     @Property(description="Wait for the camera to settle before capturing an image.")
     private boolean settleFirst;
@@ -29,17 +34,21 @@ public class ImageCapture extends CvStage {
 
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
+        Mat captured = (Mat) pipeline.getProperty(IMAGE_PROPERTY);
+        if (captured != null) {
+            return new Result(captured.clone());
+        }
         Camera camera = (Camera) pipeline.getProperty("camera");
         if (camera == null) {
             throw new Exception("No Camera set on pipeline.");
         }
-        BufferedImage image;
+        Mat image;
         if (settleFirst) {
-            image = camera.settleAndCapture();
+            image = camera.settleAndCaptureMat();
         }
         else {
-            image = camera.capture();
+            image = camera.captureMat();
         }
-        return new Result(OpenCvUtils.toMat(image));
+        return new Result(image);
     }
 }
@@ -169,7 +169,7 @@ public class CvPipelineEditor extends JPanel {
     }
 
     public void process() {
-        getPipeline().process();
+        getPipeline().process(true);
         resultsPanel.refresh();
     }
 
@@ -0,0 +1,104 @@
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.ConfigurationSnapshot;
+import org.pmw.tinylog.Logger;
+
+import com.google.common.io.Files;
+
+public class ConfigurationSnapshotTest {
+    private static final int LIBRARY_SIZE = 10000;
+
+    /**
+     * Loads a synthetic library of packages and parts from the XML, then again from the
+     * snapshots the first load wrote, and checks that both give the same packages and parts.
+     * The load times are only logged, since a single load's time is too noisy to compare.
+     */
+    @Test
+    public void testSnapshotLoad() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/machine.xml"),
+                new File(workingDirectory, "machine.xml"));
+        File packagesXml = new File(workingDirectory, "packages.xml");
+        File partsXml = new File(workingDirectory, "parts.xml");
+        writeLibrary(packagesXml, partsXml);
+
+        long t = System.currentTimeMillis();
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        long xmlTime = System.currentTimeMillis() - t;
+
+        Assert.assertTrue(ConfigurationSnapshot.getFile(packagesXml).exists());
+        Assert.assertTrue(ConfigurationSnapshot.getFile(partsXml).exists());
+        Assert.assertEquals(LIBRARY_SIZE, Configuration.get().getParts().size());
+        List<String> packages = toXml(Configuration.get().getPackages());
+        List<String> parts = toXml(Configuration.get().getParts());
+
+        t = System.currentTimeMillis();
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        long snapshotTime = System.currentTimeMillis() - t;
+
+        Assert.assertEquals(packages, toXml(Configuration.get().getPackages()));
+        Assert.assertEquals(parts, toXml(Configuration.get().getParts()));
+        Assert.assertNotNull(Configuration.get().getPart("P1").getPackage());
+
+        Logger.info("Loaded {} packages and parts from XML in {} ms, from snapshots in {} ms",
+                LIBRARY_SIZE, xmlTime, snapshotTime);
+
+        // Changing the XML makes the snapshot stale, and the XML wins.
+        FileUtils.write(partsXml, FileUtils.readFileToString(partsXml).replace("name=\"Part 1\"",
+                "name=\"Changed\""));
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        Assert.assertEquals("Changed", Configuration.get().getPart("P1").getName());
+    }
+
+    private static void writeLibrary(File packagesXml, File partsXml) throws Exception {
+        try (PrintWriter out = new PrintWriter(packagesXml)) {
+            out.println("<openpnp-packages>");
+            for (int i = 0; i < LIBRARY_SIZE; i++) {
+                out.println(String.format(
+                        "<package id=\"PKG%d\" description=\"Package %d\">", i, i));
+                out.println(String.format(
+                        "<footprint units=\"Millimeters\" body-width=\"%d.5\" body-height=\"1.25\">",
+                        i % 10));
+                for (int j = 0; j < 4; j++) {
+                    out.println(String.format(
+                            "<pad name=\"%d\" x=\"%d.1\" y=\"-0.5\" width=\"0.6\" height=\"0.8\" rotation=\"90.0\" roundness=\"%d.0\"/>",
+                            j + 1, j, j * 25));
+                }
+                out.println("</footprint>");
+                out.println("</package>");
+            }
+            out.println("</openpnp-packages>");
+        }
+        try (PrintWriter out = new PrintWriter(partsXml)) {
+            out.println("<openpnp-parts>");
+            for (int i = 0; i < LIBRARY_SIZE; i++) {
+                out.println(String.format(
+                        "<part id=\"P%d\" name=\"Part %d\" height-units=\"Millimeters\" height=\"%d.25\" package-id=\"PKG%d\" speed=\"0.5\"/>",
+                        i, i, i % 5, i));
+            }
+            out.println("</openpnp-parts>");
+        }
+    }
+
+    private static List<String> toXml(List<?> objects) throws Exception {
+        List<String> xml = new ArrayList<>();
+        for (Object o : objects) {
+            StringWriter sw = new StringWriter();
+            Configuration.createSerializer().write(o, sw);
+            xml.add(sw.toString());
+        }
+        return xml;
+    }
+}
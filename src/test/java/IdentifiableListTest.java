@@ -0,0 +1,95 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.Identifiable;
+import org.openpnp.util.IdentifiableList;
+
+public class IdentifiableListTest {
+    static class Item implements Identifiable {
+        String id;
+
+        Item(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        IdentifiableList<Item> list = new IdentifiableList<>();
+        Item a = new Item("A");
+        Item b = new Item("B");
+        list.add(a);
+        Assert.assertSame(a, list.get("A"));
+        list.add(b);
+        Assert.assertSame(b, list.get("B"));
+        Assert.assertNull(list.get("C"));
+        Assert.assertNull(list.get(null));
+
+        list.remove(a);
+        Assert.assertNull(list.get("A"));
+        Assert.assertSame(b, list.get("B"));
+
+        list.set(0, a);
+        Assert.assertSame(a, list.get("A"));
+        Assert.assertNull(list.get("B"));
+
+        list.clear();
+        Assert.assertNull(list.get("A"));
+    }
+
+    @Test
+    public void testIdChange() throws Exception {
+        IdentifiableList<Item> list = new IdentifiableList<>();
+        Item a = new Item("A");
+        list.add(a);
+        list.add(new Item("B"));
+        Assert.assertSame(a, list.get("A"));
+        a.id = "C";
+        Assert.assertNull(list.get("A"));
+        Assert.assertSame(a, list.get("C"));
+    }
+
+    /**
+     * A renamed element is found by its new id even if its old id was never looked up.
+     */
+    @Test
+    public void testIdChangeNewIdFirst() throws Exception {
+        IdentifiableList<Item> list = new IdentifiableList<>();
+        Item a = new Item("A");
+        list.add(a);
+        list.add(new Item("B"));
+        Assert.assertSame(a, list.get("A"));
+        a.id = "C";
+        Assert.assertSame(a, list.get("C"));
+        Assert.assertNull(list.get("A"));
+        Assert.assertSame(a, list.get("C"));
+
+        // Moving an id from one element to another.
+        list.get("B").id = "D";
+        a.id = "B";
+        Assert.assertSame(a, list.get("B"));
+        Assert.assertNull(list.get("C"));
+        Assert.assertEquals("P0", list.createId("P"));
+        Assert.assertEquals("C0", list.createId("C"));
+    }
+
+    @Test
+    public void testCreateId() throws Exception {
+        IdentifiableList<Item> list = new IdentifiableList<>();
+        for (int i = 0; i < 5; i++) {
+            list.add(new Item(list.createId("P")));
+        }
+        Assert.assertEquals("P5", list.createId("P"));
+        Assert.assertEquals("Q0", list.createId("Q"));
+
+        // A removed id is handed out again.
+        list.remove(list.get("P2"));
+        Assert.assertEquals("P2", list.createId("P"));
+        list.add(new Item("P2"));
+        Assert.assertEquals("P5", list.createId("P"));
+    }
+}
@@ -0,0 +1,88 @@
+import java.awt.Point;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.openpnp.util.OpenCvUtils;
+
+public class OpenCvUtilsTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Gaussian peaks planted in a CV_32FC1 map, like a matchTemplate result, are found at their
+     * centers and nowhere else.
+     */
+    @Test
+    public void testMatMaxima() throws Exception {
+        int[][] peaks = new int[][] {{50, 40, 100}, {220, 150, 90}, {120, 100, 80}};
+        Mat mat = createPeaks(300, 200, peaks);
+
+        List<Point> maxima = OpenCvUtils.matMaxima(mat, 0.5, 1.0);
+        Assert.assertEquals(peaks.length, maxima.size());
+        for (int[] peak : peaks) {
+            Assert.assertTrue(maxima.contains(new Point(peak[0], peak[1])));
+        }
+
+        // Only the peaks within the range.
+        maxima = OpenCvUtils.matMaxima(mat, 0.85, 0.95);
+        Assert.assertEquals(1, maxima.size());
+        Assert.assertEquals(new Point(220, 150), maxima.get(0));
+        mat.release();
+    }
+
+    /**
+     * A submat is not continuous, its maxima are relative to the submat.
+     */
+    @Test
+    public void testMatMaximaSubmat() throws Exception {
+        Mat mat = createPeaks(300, 200, new int[][] {{50, 40, 100}, {220, 150, 90}});
+        Mat submat = mat.submat(new Rect(200, 100, 80, 80));
+        List<Point> maxima = OpenCvUtils.matMaxima(submat, 0.5, 1.0);
+        Assert.assertEquals(1, maxima.size());
+        Assert.assertEquals(new Point(20, 50), maxima.get(0));
+        mat.release();
+    }
+
+    /**
+     * Neighbouring values that only differ beyond float precision are still told apart, for
+     * CV_32S above 2^24 and for CV_64F.
+     */
+    @Test
+    public void testMatMaximaPrecision() throws Exception {
+        Mat mat = new Mat(3, 5, CvType.CV_32SC1, new Scalar(0));
+        mat.put(1, 1, new int[] {16777217, 16777216});
+        List<Point> maxima = OpenCvUtils.matMaxima(mat, 1, 1e9);
+        Assert.assertEquals(1, maxima.size());
+        Assert.assertEquals(new Point(1, 1), maxima.get(0));
+        mat.release();
+
+        mat = new Mat(3, 5, CvType.CV_64FC1, new Scalar(0));
+        mat.put(1, 1, new double[] {1.0 + 1e-12, 1.0});
+        maxima = OpenCvUtils.matMaxima(mat, 0.5, 2);
+        Assert.assertEquals(1, maxima.size());
+        Assert.assertEquals(new Point(1, 1), maxima.get(0));
+        mat.release();
+    }
+
+    private static Mat createPeaks(int width, int height, int[][] peaks) {
+        float[] data = new float[width * height];
+        for (int[] peak : peaks) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    double d2 = (x - peak[0]) * (x - peak[0]) + (y - peak[1]) * (y - peak[1]);
+                    data[y * width + x] += (float) (peak[2] / 100.0 * Math.exp(-d2 / 50.0));
+                }
+            }
+        }
+        Mat mat = new Mat(height, width, CvType.CV_32FC1);
+        mat.put(0, 0, data);
+        return mat;
+    }
+}
@@ -0,0 +1,76 @@
+import java.awt.Point;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.machine.reference.vision.OpenCvVisionProvider;
+import org.openpnp.util.OpenCvUtils;
+
+public class OpenCvVisionProviderTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * The pyramid match finds the same maxima, with the same scores, as a full resolution
+     * Imgproc.matchTemplate on an image with several matches of different quality.
+     */
+    @Test
+    public void testMatchTemplatePyramid() throws Exception {
+        Random random = new Random(1);
+        Mat template = createTexture(random, 64, 64);
+        Mat image = createTexture(random, 480, 360);
+        int[][] places = new int[][] {{20, 30}, {300, 40}, {150, 200}, {380, 250}};
+        for (int i = 0; i < places.length; i++) {
+            Mat roi = image.submat(new Rect(places[i][0], places[i][1], 64, 64));
+            double weight = 1.0 - i * 0.1;
+            Core.addWeighted(template, weight, roi, 1.0 - weight, 0, roi);
+        }
+
+        Mat full = new Mat();
+        Imgproc.matchTemplate(image, template, full, Imgproc.TM_CCOEFF_NORMED);
+        double fullMax = Core.minMaxLoc(full).maxVal;
+        List<Point> fullMaxima = OpenCvUtils.matMaxima(full, 0.6, fullMax);
+        Assert.assertEquals(places.length, fullMaxima.size());
+        for (int[] place : places) {
+            Assert.assertTrue(fullMaxima.contains(new Point(place[0], place[1])));
+        }
+
+        List<Mat> pyramid = OpenCvVisionProvider.createTemplatePyramid(template);
+        Assert.assertEquals(3, pyramid.size());
+        Mat valid = new Mat();
+        Mat result = OpenCvVisionProvider.matchTemplatePyramid(image, pyramid,
+                Imgproc.TM_CCOEFF_NORMED, -1, valid);
+        Assert.assertEquals(fullMax, Core.minMaxLoc(result).maxVal, 1e-4);
+        List<Point> maxima = OpenCvVisionProvider.getTemplateMaxima(result, valid, 0.6, fullMax);
+
+        Assert.assertEquals(new HashSet<>(fullMaxima), new HashSet<>(maxima));
+        for (Point point : fullMaxima) {
+            Assert.assertEquals(full.get(point.y, point.x)[0], result.get(point.y, point.x)[0],
+                    1e-4);
+        }
+    }
+
+    /**
+     * Blurred noise, stretched to the full range. It has no repeating structure, so a template
+     * cut from it matches in one place only.
+     */
+    private static Mat createTexture(Random random, int width, int height) {
+        byte[] data = new byte[width * height];
+        random.nextBytes(data);
+        Mat mat = new Mat(height, width, CvType.CV_8UC1);
+        mat.put(0, 0, data);
+        Imgproc.GaussianBlur(mat, mat, new Size(0, 0), 3);
+        Core.normalize(mat, mat, 0, 255, Core.NORM_MINMAX);
+        return mat;
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.feeder.ReferenceStripFeeder;
+import org.openpnp.machine.reference.feeder.ReferenceTrayFeeder;
+import org.openpnp.model.Board;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.PlacementJournal;
+
+import com.google.common.io.Files;
+
+public class PlacementJournalTest {
+    @Test
+    public void testReplay() throws Exception {
+        File jobFile = File.createTempFile("journal", ".job.xml");
+        jobFile.deleteOnExit();
+        PlacementJournal journal = new PlacementJournal(jobFile);
+        journal.getFile().deleteOnExit();
+
+        Job job = createJob();
+        journal.append(job, job.getBoardLocations().get(0), "R1", true);
+        journal.append(job, job.getBoardLocations().get(1), "C1", true);
+        journal.append(job, job.getBoardLocations().get(1), "C2", true);
+        journal.append(job, job.getBoardLocations().get(1), "C2", false);
+        // A line that was cut off by a crash.
+        try (FileOutputStream out = new FileOutputStream(journal.getFile(), true)) {
+            out.write("0\tU1\ttr".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Job reloaded = createJob();
+        Assert.assertEquals(4, journal.replay(reloaded));
+        Assert.assertTrue(reloaded.getBoardLocations().get(0).getPlaced("R1"));
+        Assert.assertFalse(reloaded.getBoardLocations().get(0).getPlaced("C1"));
+        Assert.assertTrue(reloaded.getBoardLocations().get(1).getPlaced("C1"));
+        Assert.assertFalse(reloaded.getBoardLocations().get(1).getPlaced("C2"));
+        Assert.assertFalse(reloaded.getBoardLocations().get(0).getPlaced("U1"));
+
+        journal.delete();
+        Assert.assertFalse(journal.getFile().exists());
+        Assert.assertEquals(0, journal.replay(createJob()));
+    }
+
+    /**
+     * Feeder states journaled with the placements are restored onto the machine's feeders, the
+     * last one per feeder winning, and a feeder line cut off by a crash is not applied even
+     * though what is left of it parses.
+     */
+    @Test
+    public void testReplayFeeders() throws Exception {
+        Configuration.initialize(Files.createTempDir());
+        File jobFile = File.createTempFile("journal", ".job.xml");
+        jobFile.deleteOnExit();
+        PlacementJournal journal = new PlacementJournal(jobFile);
+        journal.getFile().deleteOnExit();
+
+        ReferenceStripFeeder stripFeeder = new ReferenceStripFeeder();
+        ReferenceTrayFeeder trayFeeder = new ReferenceTrayFeeder();
+        Job job = createJob();
+        stripFeeder.setFeedCount(1);
+        journal.append(job, job.getBoardLocations().get(0), "R1", true, stripFeeder);
+        trayFeeder.setFeedCount(12);
+        journal.append(job, job.getBoardLocations().get(0), "R2", true, trayFeeder);
+        stripFeeder.setFeedCount(2);
+        journal.append(job, job.getBoardLocations().get(1), "R1", true, stripFeeder);
+        try (FileOutputStream out = new FileOutputStream(journal.getFile(), true)) {
+            out.write(("feeder\t" + trayFeeder.getId() + "\t1").getBytes(StandardCharsets.UTF_8));
+        }
+
+        // As they were when the machine configuration was last saved.
+        stripFeeder.setFeedCount(0);
+        trayFeeder.setFeedCount(0);
+        ReferenceMachine machine = new ReferenceMachine();
+        machine.addFeeder(stripFeeder);
+        machine.addFeeder(trayFeeder);
+
+        Job reloaded = createJob();
+        Assert.assertEquals(6, journal.replay(reloaded, machine));
+        Assert.assertTrue(reloaded.getBoardLocations().get(1).getPlaced("R1"));
+        Assert.assertEquals(2, stripFeeder.getFeedCount());
+        Assert.assertEquals(12, trayFeeder.getFeedCount());
+
+        // Without a machine only the placements are replayed.
+        Assert.assertEquals(3, journal.replay(createJob()));
+    }
+
+    private static Job createJob() {
+        Job job = new Job();
+        job.addBoardLocation(new BoardLocation(new Board()));
+        job.addBoardLocation(new BoardLocation(new Board()));
+        return job;
+    }
+}
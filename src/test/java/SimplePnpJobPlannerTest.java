@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.ReferenceHead;
+import org.openpnp.machine.reference.ReferenceNozzle;
+import org.openpnp.machine.reference.ReferenceNozzleTip;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.SimplePnpJobPlanner;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Package;
+import org.openpnp.model.Part;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Head;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.spi.base.AbstractPnpJobProcessor;
+import org.openpnp.util.Collect;
+
+import com.google.common.io.Files;
+
+public class SimplePnpJobPlannerTest {
+    /**
+     * On small random heads and jobs the planner must choose exactly the solution the original
+     * planner chose: the first entry of the cartesian product of every Nozzle's compatible
+     * JobPlacements, sorted by fewest nulls and then fewest nozzle tip changes. The heads include
+     * Nozzles without a loaded NozzleTip and loaded NozzleTips that can't handle some Parts, and
+     * the jobs include Parts no Nozzle can handle.
+     */
+    @Test
+    public void testRandom() throws Exception {
+        Configuration.initialize(Files.createTempDir());
+        Random random = new Random(1);
+        SimplePnpJobPlanner planner = new SimplePnpJobPlanner();
+        for (int n = 0; n < 500; n++) {
+            List<Package> packages = new ArrayList<>();
+            int packageCount = 1 + random.nextInt(4);
+            for (int i = 0; i < packageCount; i++) {
+                packages.add(new Package("PKG" + i));
+            }
+
+            Head head = new ReferenceHead();
+            int nozzleCount = 1 + random.nextInt(4);
+            for (int i = 0; i < nozzleCount; i++) {
+                List<ReferenceNozzleTip> nozzleTips = new ArrayList<>();
+                int nozzleTipCount = 1 + random.nextInt(3);
+                for (int j = 0; j < nozzleTipCount; j++) {
+                    ReferenceNozzleTip nozzleTip = new ReferenceNozzleTip();
+                    Set<Package> compatiblePackages = new HashSet<>();
+                    for (Package pkg : packages) {
+                        if (random.nextInt(3) == 0) {
+                            compatiblePackages.add(pkg);
+                        }
+                    }
+                    nozzleTip.setCompatiblePackages(compatiblePackages);
+                    nozzleTips.add(nozzleTip);
+                }
+                ReferenceNozzleTip loaded = random.nextInt(4) == 0 ? null
+                        : nozzleTips.get(random.nextInt(nozzleTipCount));
+                head.addNozzle(new TestNozzle(nozzleTips, loaded));
+            }
+
+            List<JobPlacement> jobPlacements = new ArrayList<>();
+            int placementCount = random.nextInt(8);
+            for (int i = 0; i < placementCount; i++) {
+                Part part = new Part("P" + i);
+                part.setPackage(packages.get(random.nextInt(packageCount)));
+                Placement placement = new Placement("R" + i);
+                placement.setPart(part);
+                jobPlacements.add(new JobPlacement(null, placement));
+            }
+
+            Assert.assertEquals(rank(head, jobPlacements), planner.plan(head, jobPlacements));
+        }
+    }
+
+    /**
+     * The original planner: sort the duplicate free cartesian product of every Nozzle's
+     * compatible JobPlacements, plus null, by fewest nulls and then fewest nozzle tip changes and
+     * take the first.
+     */
+    private static List<JobPlacement> rank(Head head, List<JobPlacement> jobPlacements) {
+        List<List<JobPlacement>> solutions = new ArrayList<>();
+        for (Nozzle nozzle : head.getNozzles()) {
+            List<JobPlacement> solution = new ArrayList<>();
+            for (JobPlacement jobPlacement : jobPlacements) {
+                if (AbstractPnpJobProcessor.nozzleCanHandle(nozzle,
+                        jobPlacement.placement.getPart())) {
+                    solution.add(jobPlacement);
+                }
+            }
+            solution.add(null);
+            solutions.add(solution);
+        }
+        List<JobPlacement> best = null;
+        int bestNulls = 0;
+        int bestChanges = 0;
+        for (List<JobPlacement> list : Collect.cartesianProduct(solutions)) {
+            HashSet<JobPlacement> set = new HashSet<>();
+            boolean duplicate = false;
+            for (JobPlacement jobPlacement : list) {
+                if (jobPlacement != null && !set.add(jobPlacement)) {
+                    duplicate = true;
+                }
+            }
+            if (duplicate) {
+                continue;
+            }
+            int nulls = Collections.frequency(list, null);
+            int changes = 0;
+            for (int i = 0; i < list.size(); i++) {
+                Nozzle nozzle = head.getNozzles().get(i);
+                JobPlacement jobPlacement = list.get(i);
+                if (nozzle.getNozzleTip() == null) {
+                    changes++;
+                }
+                else if (jobPlacement != null
+                        && !nozzle.getNozzleTip().canHandle(jobPlacement.placement.getPart())) {
+                    changes++;
+                }
+            }
+            // The original sort was stable, so the first of several equal solutions wins.
+            if (best == null || nulls < bestNulls
+                    || (nulls == bestNulls && changes < bestChanges)) {
+                best = list;
+                bestNulls = nulls;
+                bestChanges = changes;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A ReferenceNozzle with a fixed set of NozzleTips and a loaded NozzleTip, which may be null.
+     */
+    private static class TestNozzle extends ReferenceNozzle {
+        public TestNozzle(List<ReferenceNozzleTip> nozzleTips, ReferenceNozzleTip loaded)
+                throws Exception {
+            for (ReferenceNozzleTip nozzleTip : nozzleTips) {
+                addNozzleTip(nozzleTip);
+            }
+            nozzleTip = loaded;
+        }
+    }
+}
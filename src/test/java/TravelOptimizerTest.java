@@ -0,0 +1,64 @@
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.util.TravelOptimizer;
+
+public class TravelOptimizerTest {
+    /**
+     * Shuffled points along a line should come back in order, visiting every point exactly once.
+     */
+    @Test
+    public void testLine() throws Exception {
+        int count = 50;
+        double[] x = new double[count];
+        Random random = new Random(1);
+        for (int i = 0; i < count; i++) {
+            x[i] = i * 10;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            double t = x[i];
+            x[i] = x[j];
+            x[j] = t;
+        }
+        int[] path = TravelOptimizer.optimize(count, (node) -> Math.abs(x[node]),
+                (a, b) -> Math.abs(x[a] - x[b]), 20);
+        Assert.assertEquals(count, path.length);
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(i * 10, x[path[i]], 0.0001);
+        }
+    }
+
+    /**
+     * The optimized path through random points must never be longer than the original order.
+     */
+    @Test
+    public void testRandom() throws Exception {
+        Random random = new Random(2);
+        for (int n = 0; n < 100; n++) {
+            int count = 2 + random.nextInt(200);
+            double[] x = new double[count];
+            double[] y = new double[count];
+            for (int i = 0; i < count; i++) {
+                x[i] = random.nextDouble() * 300;
+                y[i] = random.nextDouble() * 300;
+            }
+            TravelOptimizer.Metric metric = (a, b) -> Math.hypot(x[a] - x[b], y[a] - y[b]);
+            int[] original = new int[count];
+            for (int i = 0; i < count; i++) {
+                original[i] = i;
+            }
+            int[] path = TravelOptimizer.optimize(count, (node) -> Math.hypot(x[node], y[node]),
+                    metric, 20);
+            boolean[] seen = new boolean[count];
+            for (int node : path) {
+                Assert.assertFalse(seen[node]);
+                seen[node] = true;
+            }
+            Assert.assertTrue(TravelOptimizer.pathLength(path, (node) -> Math.hypot(x[node], y[node]),
+                    metric) <= TravelOptimizer.pathLength(original,
+                            (node) -> Math.hypot(x[node], y[node]), metric));
+        }
+    }
+}